@@ -0,0 +1,347 @@
+package de.sikora.androidapp_alertclient;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InterfaceAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Contiguous range of IPv4 addresses that is probed by a device scan.
+ *
+ * Addresses are held as unsigned 32 bit values in a long, so that ranges of any size can be
+ * compared, merged, and split without string handling.
+ */
+public final class AlertAddressRange {
+
+    // Smallest prefix length of a local subnet that is scanned, i.e. up to 65534 hosts
+    public static final int PREFIX_LENGTH_MIN = 16;
+
+    // Name prefixes of mobile data interfaces, whose subnets belong to the carrier
+    private static final String[] MOBILE_INTERFACE_PREFIXES = {"rmnet", "ccmni", "pdp", "clat",
+            "v4-"};
+
+    // First address of the range
+    private final long first;
+
+    // Last address of the range
+    private final long last;
+
+
+    /**
+     * Creates a range.
+     *
+     * @param first First address as unsigned 32 bit value.
+     * @param last  Last address as unsigned 32 bit value, not less than the first address.
+     */
+    public AlertAddressRange(long first, long last) {
+        if (first < 0 || last > 0xFFFFFFFFL || last < first) {
+            throw new IllegalArgumentException("Invalid address range " + first + "-" + last);
+        }
+
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Creates the range of the host addresses of a subnet, i.e. without the network and the
+     * broadcast address if the subnet has more than two addresses.
+     *
+     * @param address      Any address of the subnet as unsigned 32 bit value.
+     * @param prefixLength Length of the network prefix between 0 and 32.
+     * @return Range of host addresses.
+     */
+    public static AlertAddressRange fromCidr(long address, int prefixLength) {
+        long hostMask = 0xFFFFFFFFL >>> prefixLength;
+        long network = address & ~hostMask & 0xFFFFFFFFL;
+
+        if (prefixLength >= 31) {
+            return new AlertAddressRange(network, network | hostMask);
+        }
+
+        return new AlertAddressRange(network + 1, (network | hostMask) - 1);
+    }
+
+    /**
+     * Creates the range of nodes of a /24 network, as used by the former scan configuration.
+     *
+     * @param networkAdrStr Address of the network without the last octet, e.g. "192.168.17".
+     * @param nodeAdrFirst  First node address.
+     * @param nodeAdrLast   Last node address.
+     * @return Range of node addresses.
+     */
+    public static AlertAddressRange fromNodes(String networkAdrStr, int nodeAdrFirst,
+                                              int nodeAdrLast) {
+        long network = parseAddress(networkAdrStr + ".0");
+
+        if (network < 0) {
+            throw new IllegalArgumentException("Invalid network address " + networkAdrStr);
+        }
+
+        return new AlertAddressRange(network + nodeAdrFirst, network + nodeAdrLast);
+    }
+
+    /**
+     * Parses an IPv4 address in dotted decimal notation without name resolution.
+     *
+     * @param addressStr Address string, e.g. "192.168.17.2".
+     * @return Address as unsigned 32 bit value or -1 if the string is no IPv4 address.
+     */
+    public static long parseAddress(String addressStr) {
+        long address = 0;
+        int numOctets = 0;
+        int octet = -1;
+
+        for (int i = 0; i <= addressStr.length(); i++) {
+            char c = (i < addressStr.length()) ? addressStr.charAt(i) : '.';
+
+            if (c >= '0' && c <= '9') {
+                octet = ((octet < 0) ? 0 : octet * 10) + (c - '0');
+
+                if (octet > 255) {
+                    return -1;
+                }
+            }
+            else if (c == '.' && octet >= 0 && numOctets < 4) {
+                address = (address << 8) | octet;
+                numOctets += 1;
+                octet = -1;
+            }
+            else {
+                return -1;
+            }
+        }
+
+        return (numOctets == 4) ? address : -1;
+    }
+
+    /**
+     * Formats an address in dotted decimal notation.
+     *
+     * @param address Address as unsigned 32 bit value.
+     * @return Address string.
+     */
+    public static String formatAddress(long address) {
+        return ((address >>> 24) & 0xFF) + "." + ((address >>> 16) & 0xFF) + "."
+                + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+    }
+
+    /**
+     * Returns the host ranges of the private IPv4 subnets of all active Wi-Fi and Ethernet
+     * interfaces, see <code>isLocalSubnet</code>. Subnets with a prefix shorter than
+     * PREFIX_LENGTH_MIN are limited to the PREFIX_LENGTH_MIN subnet around the local address.
+     * Overlapping ranges are merged.
+     *
+     * @return Ranges in ascending order, empty if no interface is up.
+     */
+    public static List<AlertAddressRange> getLocalRanges() {
+        List<AlertAddressRange> ranges = new ArrayList<>();
+
+        try {
+            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+
+            while (interfaces != null && interfaces.hasMoreElements()) {
+                NetworkInterface networkInterface = interfaces.nextElement();
+
+                if (!networkInterface.isUp() || networkInterface.isLoopback()) {
+                    continue;
+                }
+
+                for (InterfaceAddress interfaceAddress : networkInterface.getInterfaceAddresses()) {
+                    InetAddress address = interfaceAddress.getAddress();
+
+                    if (isLocalSubnet(networkInterface.getName(),
+                            networkInterface.isPointToPoint(), address,
+                            interfaceAddress.getBroadcast())) {
+                        int prefixLength = Math.max(interfaceAddress.getNetworkPrefixLength(),
+                                PREFIX_LENGTH_MIN);
+
+                        ranges.add(fromCidr(toLong(address), prefixLength));
+                    }
+                }
+            }
+        }
+        catch (SocketException e) {
+            // No interfaces can be listed, e.g. due to missing permissions
+        }
+
+        return merge(ranges);
+    }
+
+    /**
+     * Returns whether the subnet of an interface address is a local network that may contain
+     * alert devices, i.e. a private IPv4 subnet of a broadcast network like Wi-Fi or Ethernet.
+     * Subnets of mobile data interfaces and point-to-point links, e.g. VPNs, are excluded,
+     * since their addresses belong to the carrier or the peer.
+     *
+     * @param interfaceName Name of the network interface, e.g. "wlan0".
+     * @param pointToPoint  True, if the interface is a point-to-point link.
+     * @param address       Address of the interface.
+     * @param broadcast     Broadcast address of the subnet, null if there is none.
+     * @return True, if the subnet shall be scanned.
+     */
+    static boolean isLocalSubnet(String interfaceName, boolean pointToPoint, InetAddress address,
+                                 InetAddress broadcast) {
+        if (pointToPoint || broadcast == null || !(address instanceof Inet4Address)
+                || !address.isSiteLocalAddress()) {
+            return false;
+        }
+
+        for (String prefix : MOBILE_INTERFACE_PREFIXES) {
+            if (interfaceName.startsWith(prefix)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Merges overlapping and adjacent ranges.
+     *
+     * @param ranges Ranges in any order.
+     * @return Disjoint ranges in ascending order.
+     */
+    public static List<AlertAddressRange> merge(List<AlertAddressRange> ranges) {
+        List<AlertAddressRange> sorted = new ArrayList<>(ranges);
+
+        Collections.sort(sorted, new Comparator<AlertAddressRange>() {
+            @Override
+            public int compare(AlertAddressRange r1, AlertAddressRange r2) {
+                return (r1.first < r2.first) ? -1 : ((r1.first == r2.first) ? 0 : 1);
+            }
+        });
+
+        List<AlertAddressRange> merged = new ArrayList<>();
+        AlertAddressRange current = null;
+
+        for (AlertAddressRange range : sorted) {
+            if (current != null && range.first <= current.last + 1) {
+                current = new AlertAddressRange(current.first, Math.max(current.last, range.last));
+            }
+            else {
+                if (current != null) {
+                    merged.add(current);
+                }
+                current = range;
+            }
+        }
+
+        if (current != null) {
+            merged.add(current);
+        }
+
+        return merged;
+    }
+
+    /**
+     * Splits ranges into shards that can be scanned concurrently. Each range is split into
+     * shards of equal size in proportion to its share of all addresses, but the shards are not
+     * smaller than the specified minimum, so that small networks are not split.
+     *
+     * @param ranges       Ranges to be split.
+     * @param numShardsMax Maximum number of shards, unless there are more ranges.
+     * @param shardSizeMin Minimum number of addresses per shard, unless a range is smaller.
+     * @return Shards in the order of the ranges.
+     */
+    public static List<AlertAddressRange> split(List<AlertAddressRange> ranges, int numShardsMax,
+                                                int shardSizeMin) {
+        long total = 0;
+
+        for (AlertAddressRange range : ranges) {
+            total += range.size();
+        }
+
+        List<AlertAddressRange> shards = new ArrayList<>();
+
+        for (AlertAddressRange range : ranges) {
+            long size = range.size();
+
+            // Share of the shards, limited by the minimum size, at least one shard per range
+            long numShards = Math.min(size * numShardsMax / total,
+                    (size + shardSizeMin - 1) / shardSizeMin);
+            numShards = Math.max(1, numShards);
+
+            for (long i = 0; i < numShards; i++) {
+                long first = range.first + size * i / numShards;
+                long last = range.first + size * (i + 1) / numShards - 1;
+
+                shards.add(new AlertAddressRange(first, last));
+            }
+        }
+
+        return shards;
+    }
+
+    private static long toLong(InetAddress address) {
+        byte[] bytes = address.getAddress();
+
+        return ((bytes[0] & 0xFFL) << 24) | ((bytes[1] & 0xFFL) << 16)
+                | ((bytes[2] & 0xFFL) << 8) | (bytes[3] & 0xFFL);
+    }
+
+    public long getFirst() {
+        return first;
+    }
+
+    public long getLast() {
+        return last;
+    }
+
+    /**
+     * Returns the number of addresses in the range.
+     *
+     * @return Number of addresses.
+     */
+    public long size() {
+        return last - first + 1;
+    }
+
+    /**
+     * Returns the address at a position of the range.
+     *
+     * @param index Position between 0 and size() - 1.
+     * @return Address string.
+     */
+    public String getAddress(long index) {
+        return formatAddress(first + index);
+    }
+
+    /**
+     * Returns whether an address lies within the range.
+     *
+     * @param addressStr Address string, e.g. "192.168.17.2".
+     * @return True, if the string is an IPv4 address within the range.
+     */
+    public boolean contains(String addressStr) {
+        long address = parseAddress(addressStr);
+
+        return address >= first && address <= last;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof AlertAddressRange)) {
+            return false;
+        }
+
+        AlertAddressRange other = (AlertAddressRange) obj;
+
+        return first == other.first && last == other.last;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (first * 31 + last);
+    }
+
+    @Override
+    public String toString() {
+        return formatAddress(first) + "-" + formatAddress(last);
+    }
+}
@@ -9,11 +9,12 @@ import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.Lifecycle;
 
 import android.widget.TextView;
 import android.widget.ToggleButton;
 
-import java.util.Vector;
+import java.util.List;
 
 /**
  * Allows the user to monitor and control alert devices.
@@ -43,6 +44,9 @@ public class AlertClientFragment extends Fragment implements AlertDeviceModel.Al
     // Time of last click on the alarm toggle button
     private long timeLastClick;
 
+    // Version of the device state shown by the UI
+    private volatile long shownStateVersion = -1;
+
 
     /**
      * Called when a fragment is first attached to its context.
@@ -136,8 +140,9 @@ public class AlertClientFragment extends Fragment implements AlertDeviceModel.Al
     @Override
     public void onAlertLevelEvent(AlertDeviceModel alertState,
                                   AlertDeviceModel.AlertStateEvent ev) {
-        // Ignore state changes shortly after click event
-        if (System.currentTimeMillis() - timeLastClick >= TIME_HOLD_STATE_AFTER_CLICK) {
+        // Ignore state changes shortly after click event and if the UI already shows the state
+        if (System.currentTimeMillis() - timeLastClick >= TIME_HOLD_STATE_AFTER_CLICK
+                && alertState.getStateVersion() != shownStateVersion) {
 
             // Update must be done from the UI Thread
             getActivity().runOnUiThread(new Runnable() {
@@ -160,6 +165,11 @@ public class AlertClientFragment extends Fragment implements AlertDeviceModel.Al
     @Override
     public void onConnectionStateEvent(AlertDeviceModel alertState,
                                        AlertDeviceModel.AlertStateEvent ev) {
+        // Skip the update if the UI already shows the state
+        if (alertState.getStateVersion() == shownStateVersion) {
+            return;
+        }
+
         // Update must be done from the UI Thread
         getActivity().runOnUiThread(new Runnable() {
             @Override
@@ -169,12 +179,30 @@ public class AlertClientFragment extends Fragment implements AlertDeviceModel.Al
         });
     }
 
+    /**
+     * Called on the UI thread when the registered devices have been restored, so that a device
+     * restored after this fragment has started is shown.
+     */
+    void onDevicesRestored() {
+        // Otherwise, devices are updated when the fragment starts
+        if (!getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED)) {
+            return;
+        }
+
+        if (device != null) {
+            device.removeListener(this);
+        }
+
+        updateDevices();
+        updateUI();
+    }
+
     private void updateDevices() {
         // Get list of devices from the AlertClientPool
-        Vector<AlertDeviceModel> deviceList = alertClientPool.getDeviceList();
+        List<AlertDeviceModel> deviceList = alertClientPool.getDeviceList();
 
         if (!deviceList.isEmpty()) {
-            device = deviceList.firstElement();
+            device = deviceList.get(0);
 
             // Register this fragment as listener for alert state changes
             device.addListener(this);
@@ -229,8 +257,12 @@ public class AlertClientFragment extends Fragment implements AlertDeviceModel.Al
 
             //toggleAlertButton.setTextColor(c1);
 
-            boolean connected = device.isConnected();
-            boolean alertOn = device.getAlertLevel() > 0;
+            // Take a consistent snapshot of the device state
+            long state = device.getState();
+            shownStateVersion = AlertDeviceModel.versionOf(state);
+
+            boolean connected = AlertDeviceModel.isConnectedIn(state);
+            boolean alertOn = AlertDeviceModel.levelOf(state) > 0;
 
             if (connected) {
                 // Connection state view: ok
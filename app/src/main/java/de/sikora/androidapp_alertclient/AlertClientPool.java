@@ -1,9 +1,17 @@
 package de.sikora.androidapp_alertclient;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Manages a set of alert client devices.
@@ -13,22 +21,83 @@ public class AlertClientPool implements AlertDeviceScanTcp.AlertDeviceScanListen
     // Port of the Alert Server to which this client connects to
     public static final int ALERT_SERVER_DEFAULT_PORT = 12321;
 
+    // Range that is scanned if no ranges are set and no local network interface is up
     private static String networkAdrStr = "192.168.17";
 
     private static int nodeAdrFirst = 2;
     private static int nodeAdrLast = 254;
 
+    // Ranges that are scanned, null to scan the subnets of the local network interfaces
+    private static List<AlertAddressRange> scanRanges = null;
+
+    // If true, the hosts in the neighbor table of the system are probed before the other hosts
+    private static boolean neighborSeedingEnabled = true;
+
+    // Maximum number of shards of the scanned ranges that are scanned concurrently
+    private static final int SCAN_SHARDS_MAX = 16;
+
+    // Minimum number of addresses of a shard, so that a /24 network is scanned as one shard
+    private static final int SCAN_SHARD_SIZE_MIN = 256;
+
     private static int remotePort = ALERT_SERVER_DEFAULT_PORT;
 
+    // If true, all clients are driven by a single selector thread instead of one thread each
+    private static boolean selectorModeEnabled = true;
+
+    // Maximum number of threads executing client sessions and scans
+    private static int executorThreadsMax = 64;
+
+    // Maximum time to wait for the sessions and scans to finish when the pool is shut down
+    private static final long TIME_SHUTDOWN_MAX = 5000;
+
     private static AlertClientPool instance = null;
 
     private Vector<AlertDeviceScanTcp> scannerList;
 
+    // Address ranges of the scanners in the scanner list
+    private List<AlertAddressRange> scanShards = Collections.emptyList();
+
+    // Addresses at which the scans have found no device, shared by all scanners
+    private final AlertScanCache scanCache = new AlertScanCache();
+
+    // Ids of the devices reported by the running scan, so that each device is reported once
+    private final Set<String> foundDeviceIds = new HashSet<>();
+
     private AtomicBoolean scanActive;
 
+    // Number of shards of the running scan that have not finished yet
+    private final AtomicInteger scanShardsActive = new AtomicInteger();
+
+    // Flag indicating that the scan has been stopped but its scanners are still running,
+    // guarded by scanActive
+    private boolean scanStopping = false;
+
+    // Scan requested while stopping, started when the stopped scanners have finished, guarded
+    // by scanActive
+    private AlertDeviceScanTcp.AlertDeviceScanListener pendingScanListener;
+
+    // Devices that are probed first by the pending scan, may be null, guarded by scanActive
+    private List<AlertDeviceModel> pendingPriorityDevices;
+
     private AlertDeviceScanTcp.AlertDeviceScanListener scanResultListener;
 
-    private List<AlertClientTcp> alertClients;
+    // Comparison of the running incremental scan with the known devices, null otherwise
+    private AlertDeviceScanDiff scanDiff;
+
+    // Devices detected by previous incremental scans by address
+    private final Map<String, AlertDeviceModel> scannedDevices = new LinkedHashMap<>();
+
+    // Clients of the devices in the pool by device address and id
+    private final AlertDeviceIndex<AlertClientTcp> alertClients = new AlertDeviceIndex<>();
+
+    // Selector that drives the clients when the selector mode is enabled
+    private AlertClientSelector clientSelector;
+
+    // Persistent storage of the registered devices, null if not opened
+    private volatile AlertDeviceRegistry registry;
+
+    // Executor running the client sessions, the selector, and the scans
+    private AlertExecutor executor;
 
 
     public static AlertClientPool getInstance() {
@@ -44,30 +113,276 @@ public class AlertClientPool implements AlertDeviceScanTcp.AlertDeviceScanListen
      * <code>getInstance</code> method.
      */
     private AlertClientPool() {
-        alertClients = new Vector<>();
         scanActive = new AtomicBoolean(false);
         scannerList = new Vector<>();
     }
 
+    /**
+     * Enables or disables the selector mode. In selector mode all clients are driven by a
+     * single thread. Otherwise, a separate thread is started for each client.
+     *
+     * The mode applies to clients started afterwards.
+     *
+     * @param enabled True, if the selector mode shall be used.
+     */
+    public static void setSelectorModeEnabled(boolean enabled) {
+        selectorModeEnabled = enabled;
+    }
+
+    /**
+     * Sets the maximum number of threads executing client sessions and scans. Applies to the
+     * executor created on next use, i.e. after the pool has been shut down.
+     *
+     * @param maxThreads Maximum number of threads.
+     */
+    public static void setExecutorThreadsMax(int maxThreads) {
+        executorThreadsMax = maxThreads;
+    }
+
+    public static boolean isSelectorModeEnabled() {
+        return selectorModeEnabled;
+    }
+
+    /**
+     * Sets the address ranges that are scanned for devices. Applies to scans started afterwards.
+     *
+     * @param ranges Ranges to be scanned, or null to scan the private subnets of all Wi-Fi and
+     *               Ethernet interfaces that are up.
+     */
+    public static void setScanRanges(List<AlertAddressRange> ranges) {
+        scanRanges = (ranges != null) ? new ArrayList<>(ranges) : null;
+    }
+
+    /**
+     * Enables or disables handing over the connections of the scans to the clients. When
+     * enabled, a client started for a device detected shortly before takes over the connection
+     * of the scan instead of connecting again.
+     *
+     * @param enabled True, if the connections of detected devices shall be kept open.
+     */
+    public static void setConnectionHandOffEnabled(boolean enabled) {
+        AlertConnectionCache.getInstance().setEnabled(enabled);
+    }
+
+    public static boolean isConnectionHandOffEnabled() {
+        return AlertConnectionCache.getInstance().isEnabled();
+    }
+
+    /**
+     * Enables or disables probing the hosts in the neighbor table of the system, e.g. the ARP
+     * cache, before the remaining addresses of the scanned ranges. Applies to scans started
+     * afterwards.
+     *
+     * @param enabled True, if the neighbors shall be probed first.
+     */
+    public static void setNeighborSeedingEnabled(boolean enabled) {
+        neighborSeedingEnabled = enabled;
+    }
+
+    public static boolean isNeighborSeedingEnabled() {
+        return neighborSeedingEnabled;
+    }
+
+    /**
+     * Returns the address ranges that are scanned for devices, i.e. the ranges that have been
+     * set or else the private subnets of the local Wi-Fi and Ethernet interfaces.
+     *
+     * @return Disjoint ranges in ascending order.
+     */
+    public static List<AlertAddressRange> getScanRanges() {
+        List<AlertAddressRange> ranges = scanRanges;
+
+        if (ranges != null) {
+            return AlertAddressRange.merge(ranges);
+        }
+
+        ranges = AlertAddressRange.getLocalRanges();
+
+        if (ranges.isEmpty()) {
+            ranges.add(AlertAddressRange.fromNodes(networkAdrStr, nodeAdrFirst, nodeAdrLast));
+        }
+
+        return ranges;
+    }
+
+    /**
+     * Opens the persistent device registry and adds the devices stored in it to the pool.
+     * Afterwards, each device added to or removed from the pool is recorded in the registry.
+     *
+     * Subsequent calls have no effect.
+     *
+     * @param registryFile File in which the registered devices are stored.
+     */
+    public synchronized void openRegistry(File registryFile) {
+        if (registry == null) {
+            AlertDeviceRegistry deviceRegistry = new AlertDeviceRegistry(registryFile);
+
+            // Add the stored devices before the registry is set so that they are not recorded again
+            for (AlertDeviceModel device : deviceRegistry.load()) {
+                addDevice(device);
+            }
+
+            registry = deviceRegistry;
+        }
+    }
+
     public void startScanAndListen(AlertDeviceScanTcp.AlertDeviceScanListener listener) {
+        startScan(listener, null);
+    }
+
+    /**
+     * Starts an incremental scan. The known devices, i.e. the registered devices and the devices
+     * detected by previous incremental scans, are probed first, then the remaining addresses.
+     * Instead of all detected devices, only the differences to the known devices are reported.
+     *
+     * @param listener Listener that is informed about added, removed, and changed devices.
+     */
+    public void startIncrementalScanAndListen(AlertDeviceScanDiff.DiffListener listener) {
+        List<AlertDeviceModel> knownDevices = getKnownDevices();
+
+        startScan(new AlertDeviceScanDiff(knownDevices, listener), knownDevices);
+    }
+
+    /**
+     * Returns the registered devices and the devices detected by previous incremental scans.
+     *
+     * @return List of devices.
+     */
+    public List<AlertDeviceModel> getKnownDevices() {
+        Map<String, AlertDeviceModel> knownDevices = new LinkedHashMap<>();
+
+        synchronized (scannedDevices) {
+            knownDevices.putAll(scannedDevices);
+        }
+
+        // Prefer the objects of the registered devices
+        for (AlertDeviceModel device : getDeviceList()) {
+            knownDevices.put(device.getAddress(), device);
+        }
+
+        return new ArrayList<>(knownDevices.values());
+    }
 
-        if ( scanActive.compareAndSet(false, true) ) {
+    private void startScan(AlertDeviceScanTcp.AlertDeviceScanListener listener,
+                           List<AlertDeviceModel> priorityDevices) {
+
+        AlertDeviceScanTcp.AlertDeviceScanListener rejectedListener = null;
+        boolean start = false;
+
+        synchronized (scanActive) {
+            if (!scanActive.get()) {
+                scanActive.set(true);
+                start = true;
+            }
+            else if (scanStopping) {
+                // Start the scan as soon as the stopped scanners have finished, instead of a
+                // scan that has been requested before
+                rejectedListener = pendingScanListener;
+                pendingScanListener = listener;
+                pendingPriorityDevices = priorityDevices;
+            }
+            else {
+                // Another scan is running
+                rejectedListener = listener;
+            }
+        }
+
+        rejectScan(rejectedListener);
+
+        if (start) {
             try {
-                // Create the new AlertDeviceScanTcp object, register the listener for scan results
-                if (scannerList.isEmpty()) {
-                    AlertDeviceScanTcp scanner = new AlertDeviceScanTcp(networkAdrStr,
-                            nodeAdrFirst, nodeAdrLast, remotePort);
+                // Split the ranges into shards that are scanned concurrently
+                List<AlertAddressRange> shards = AlertAddressRange.split(getScanRanges(),
+                        SCAN_SHARDS_MAX, SCAN_SHARD_SIZE_MIN);
+
+                // Nothing to be scanned, e.g. if no network interface is up
+                if (shards.isEmpty()) {
+                    scanActive.set(false);
+                    rejectScan(listener);
+                    return;
+                }
+
+                // Create the AlertDeviceScanTcp objects, register the listener for scan results
+                if (!shards.equals(scanShards)) {
+                    for (AlertDeviceScanTcp scanner : scannerList) {
+                        scanner.removeListener(this);
+                    }
+
+                    scannerList.clear();
 
-                    scanner.addListener(this);
-                    scannerList.add(scanner);
+                    // The shards share the probe budget of a single scan, which keeps the number
+                    // of open sockets below the file descriptor limit
+                    int sweepProbesMax = Math.max(1,
+                            AlertDeviceScanTcp.SWEEP_PROBES_MAX / shards.size());
+
+                    for (AlertAddressRange shard : shards) {
+                        AlertDeviceScanTcp scanner = new AlertDeviceScanTcp(shard, remotePort);
+
+                        scanner.setScanCache(scanCache);
+                        scanner.setSweepProbesMax(sweepProbesMax);
+                        scanner.addListener(this);
+                        scannerList.add(scanner);
+                    }
+
+                    scanShards = shards;
+                }
+
+                synchronized (foundDeviceIds) {
+                    foundDeviceIds.clear();
                 }
 
                 scanResultListener = listener;
+                scanDiff = (listener instanceof AlertDeviceScanDiff)
+                        ? (AlertDeviceScanDiff) listener : null;
+
+                // Probe the addresses of the known devices first in case of an incremental scan.
+                // Each address is probed by the scanner of its shard, or by the first scanner if
+                // it is outside of all shards.
+                List<List<String>> priorityAddresses = new ArrayList<>();
+                Set<String> addedAddresses = new HashSet<>();
+
+                for (int i = 0; i < scannerList.size(); i++) {
+                    priorityAddresses.add(new ArrayList<String>());
+                }
+
+                if (priorityDevices != null) {
+                    for (AlertDeviceModel device : priorityDevices) {
+                        if (addedAddresses.add(device.getAddress())) {
+                            int shardIndex = Math.max(0, findShard(device.getAddress()));
+
+                            priorityAddresses.get(shardIndex).add(device.getAddress());
+                        }
+                    }
+                }
+
+                // Then the hosts of the scanned ranges that are known to be alive, unless they
+                // are known not to be alert devices
+                if (neighborSeedingEnabled) {
+                    long curTime = System.currentTimeMillis();
+
+                    for (String address : AlertNeighborTable.getNeighborAddresses()) {
+                        int shardIndex = findShard(address);
+
+                        if (shardIndex >= 0 && !addedAddresses.contains(address)
+                                && !scanCache.isSkipped(AlertAddressRange.parseAddress(address),
+                                        curTime)) {
+                            addedAddresses.add(address);
+                            priorityAddresses.get(shardIndex).add(address);
+                        }
+                    }
+                }
+
+                for (int i = 0; i < scannerList.size(); i++) {
+                    scannerList.get(i).setPriorityAddresses(priorityAddresses.get(i));
+                }
+
+                // Count the shards before the first one can finish
+                scanShardsActive.set(scannerList.size());
 
                 for (AlertDeviceScanTcp scanner:scannerList) {
-                    if (!scanner.isRunning()) {
-                        // Execute the scanning task in the background
-                        new Thread(scanner).start();
+                    // Execute the scanning task in the background
+                    if (!scanner.start(getExecutor())) {
+                        onScanFinished();
                     }
                 }
             }
@@ -78,30 +393,127 @@ public class AlertClientPool implements AlertDeviceScanTcp.AlertDeviceScanListen
         }
     }
 
+    /**
+     * Informs the listener of a scan that has not been started that the scan has finished.
+     * Known devices are not reported as removed, since none has been probed.
+     *
+     * @param listener Listener of the scan, may be null.
+     */
+    private static void rejectScan(AlertDeviceScanTcp.AlertDeviceScanListener listener) {
+        if (listener instanceof AlertDeviceScanDiff) {
+            ((AlertDeviceScanDiff) listener).abort();
+        }
+
+        if (listener != null) {
+            listener.onScanFinished();
+        }
+    }
+
+    /**
+     * Returns the index of the shard containing an address.
+     *
+     * @param address Address string.
+     * @return Index in the scanner list or -1 if the address is outside of all shards.
+     */
+    private int findShard(String address) {
+        for (int i = 0; i < scanShards.size(); i++) {
+            if (scanShards.get(i).contains(address)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Called by the scanners of all shards. A device that is reachable at several addresses,
+     * e.g. from two subnets, is only reported for the first address at which it is found.
+     *
+     * @param device Detected device.
+     */
     @Override
     public void onDeviceFound(AlertDeviceModel device) {
+        if (device.getId() != null) {
+            synchronized (foundDeviceIds) {
+                if (!foundDeviceIds.add(device.getId())) {
+                    return;
+                }
+            }
+        }
+
+        // A device that answers the scan is reachable again: retry its connection immediately
+        AlertClientTcp client = alertClients.getByAddress(device.getAddress());
+
+        if (client != null && client.isRunning()
+                && client.getReconnectPolicy().getCircuitState()
+                        != AlertReconnectPolicy.CircuitState.CLOSED) {
+            client.reconnectNow();
+        }
+
         if (scanResultListener != null) {
             scanResultListener.onDeviceFound(device);
         }
     }
 
+    /**
+     * Returns the cache of addresses at which the scans have found no device, e.g. to change
+     * the times for which they are skipped or to clear it before a full scan.
+     *
+     * @return Scan cache of the pool.
+     */
+    public AlertScanCache getScanCache() {
+        return scanCache;
+    }
+
+    /**
+     * Called by the scanner of each shard when it has finished. The scan is finished when the
+     * last shard has finished. A scan requested while stopping is started afterwards.
+     */
     @Override
     public void onScanFinished() {
+        AlertDeviceScanTcp.AlertDeviceScanListener nextListener;
+        List<AlertDeviceModel> nextPriorityDevices;
 
-        boolean allFinished = true;
-
-        for (AlertDeviceScanTcp scanner:scannerList) {
-            if (scanner.isRunning()) {
-                allFinished = false;
+        synchronized (scanActive) {
+            if (scanShardsActive.decrementAndGet() != 0) {
+                return;
             }
-        }
 
-        if (allFinished) {
             scanActive.set(false);
+            scanStopping = false;
+
+            nextListener = pendingScanListener;
+            nextPriorityDevices = pendingPriorityDevices;
+            pendingScanListener = null;
+            pendingPriorityDevices = null;
+        }
 
-            if (scanResultListener != null) {
-                scanResultListener.onScanFinished();
-                scanResultListener = null;
+        if (scanResultListener != null) {
+            scanResultListener.onScanFinished();
+            scanResultListener = null;
+        }
+
+        updateScannedDevices();
+
+        if (nextListener != null) {
+            startScan(nextListener, nextPriorityDevices);
+        }
+    }
+
+    /**
+     * Takes over the devices known after an incremental scan.
+     */
+    private void updateScannedDevices() {
+        AlertDeviceScanDiff diff = scanDiff;
+        scanDiff = null;
+
+        if (diff != null) {
+            synchronized (scannedDevices) {
+                scannedDevices.clear();
+
+                for (AlertDeviceModel device : diff.getCurrentDevices()) {
+                    scannedDevices.put(device.getAddress(), device);
+                }
             }
         }
     }
@@ -111,6 +523,11 @@ public class AlertClientPool implements AlertDeviceScanTcp.AlertDeviceScanListen
             AlertDeviceScanTcp.AlertDeviceScanListener storedListener = scanResultListener;
             scanResultListener = null;
 
+            // Do not report devices as removed that have not been probed
+            if (scanDiff != null) {
+                scanDiff.abort();
+            }
+
             for (AlertDeviceScanTcp scanner : scannerList) {
                 if (scanner.isRunning()) {
                     scanner.stopScan();
@@ -120,26 +537,111 @@ public class AlertClientPool implements AlertDeviceScanTcp.AlertDeviceScanListen
             if (storedListener != null) {
                 storedListener.onScanFinished();
             }
+
+            updateScannedDevices();
         }
         finally {
-            scanActive.set(false);
+            AlertDeviceScanTcp.AlertDeviceScanListener cancelledListener;
+
+            // A new scan is started after the stopped scanners have finished, otherwise their
+            // shards would not be scanned again
+            synchronized (scanActive) {
+                if (scanShardsActive.get() <= 0) {
+                    scanActive.set(false);
+                }
+                else {
+                    scanStopping = true;
+                }
+
+                // A scan requested after a previous stop is not started anymore
+                cancelledListener = pendingScanListener;
+                pendingScanListener = null;
+                pendingPriorityDevices = null;
+            }
+
+            rejectScan(cancelledListener);
         }
     }
 
-    public Vector<AlertDeviceModel> getDeviceList() {
-        Vector<AlertDeviceModel> deviceList = new Vector<>(alertClients.size());
+    /**
+     * Returns the devices in the pool.
+     *
+     * @return Unmodifiable snapshot of the devices in the order in which they have been added.
+     */
+    public List<AlertDeviceModel> getDeviceList() {
+        return alertClients.getDevices();
+    }
+
+    /**
+     * Returns the device with the specified address.
+     *
+     * @param address Address of the device.
+     * @return Device or null if there is no device with the address in the pool.
+     */
+    public AlertDeviceModel getDeviceByAddr(String address) {
+        return alertClients.getDeviceByAddress(address);
+    }
+
+    /**
+     * Returns the device with the specified id.
+     *
+     * @param id Id of the device.
+     * @return Device or null if there is no device with the id in the pool.
+     */
+    public AlertDeviceModel getDeviceById(String id) {
+        return alertClients.getDeviceById(id);
+    }
 
-        // Retrieve all devices and add to list
-        Iterator<AlertClientTcp> it = alertClients.iterator();
+    /**
+     * Sets an alert level on several devices at the same time. The level is handed to the
+     * clients of all devices at once and each device acknowledges it by reporting the level
+     * back. Devices that are not in the pool or whose client is not running fail immediately.
+     *
+     * @param devices    Devices on which the level shall be set, identified by their address.
+     * @param alertLevel Alert level.
+     * @param timeout    Time in ms within which the devices must acknowledge the level.
+     * @param listener   Listener informed when all devices have acknowledged the level or the
+     *                   timeout has expired, or null.
+     * @return Command, which provides the result of each device.
+     */
+    public AlertFleetCommand setAlertLevel(Collection<AlertDeviceModel> devices, int alertLevel,
+                                           long timeout,
+                                           AlertFleetCommand.FleetCommandListener listener) {
+        AlertFleetCommand command = new AlertFleetCommand(alertLevel, listener);
 
-        while (it.hasNext()) {
-            AlertClientTcp client = it.next();
-            AlertDeviceModel device = client.getAlertDevice();
+        for (AlertDeviceModel device : devices) {
+            AlertClientTcp client = alertClients.getByAddress(device.getAddress());
 
-            deviceList.add(device);
+            if (client == null) {
+                command.addFailedDevice(device, AlertFleetCommand.Status.NOT_IN_POOL);
+            }
+            else if (!client.isRunning()) {
+                command.addFailedDevice(client.getAlertDevice(),
+                        AlertFleetCommand.Status.NOT_RUNNING);
+            }
+            else {
+                // The client observes the device object of the pool
+                command.addDevice(client.getAlertDevice(), client);
+            }
         }
 
-        return deviceList;
+        command.start(timeout);
+
+        return command;
+    }
+
+    /**
+     * Sets an alert level on all devices in the pool at the same time, e.g. to raise a
+     * site-wide alarm. See <code>setAlertLevel</code>.
+     *
+     * @param alertLevel Alert level.
+     * @param timeout    Time in ms within which the devices must acknowledge the level.
+     * @param listener   Listener informed when the command is finished, or null.
+     * @return Command, which provides the result of each device.
+     */
+    public AlertFleetCommand setAlertLevelOnAllDevices(
+            int alertLevel, long timeout, AlertFleetCommand.FleetCommandListener listener) {
+        return setAlertLevel(getDeviceList(), alertLevel, timeout, listener);
     }
 
     /**
@@ -153,90 +655,93 @@ public class AlertClientPool implements AlertDeviceScanTcp.AlertDeviceScanListen
      */
     public void addDevice(AlertDeviceModel alertDevice) {
 
-        // Check if there already is an AlertClientTcp object for the device address
-        Iterator<AlertClientTcp> it = alertClients.iterator();
+        // Create the new AlertClientTcp object for the specified device and add it to the pool
+        AlertClientTcp alertClientTcp = new AlertClientTcp(alertDevice);
 
-        while (it.hasNext()) {
-            AlertClientTcp client = it.next();
-            AlertDeviceModel device = client.getAlertDevice();
+        AlertClientTcp previousClient = alertClients.put(alertDevice, alertClientTcp);
 
-            // Check if the new device has the same address as the device from the pool
-            if ( device.getAddress().equals(alertDevice.getAddress()) ) {
-                // Shutdown the client
-                client.shutdown();
+        // Shutdown the client of a previous device with the same address
+        if (previousClient != null) {
+            previousClient.shutdown();
 
-                // Remove the previous client and device from the pool
-                it.remove();
-
-                // Clear 'registered' flag of the removed device
-                device.setRegistered(false);
-            }
+            // Clear 'registered' flag of the removed device
+            previousClient.getAlertDevice().setRegistered(false);
         }
 
-        // Create the new AlertClientTcp object for the specified device
-        AlertClientTcp alertClientTcp = new AlertClientTcp(alertDevice);
-
-        // Add the new AlertClientTcp object to the pool
-        alertClients.add(alertClientTcp);
-
         // Set 'registered' flag of the new device
         alertDevice.setRegistered(true);
+
+        // Store the device persistently
+        recordDevice(alertDevice.getAddress());
     }
 
     public void removeDeviceByAddr(AlertDeviceModel alertDevice) {
-        // Check if there already is an AlertClientTcp object for the device address
-        Iterator<AlertClientTcp> it = alertClients.iterator();
+        // Remove the AlertClientTcp object for the device address from the pool
+        AlertClientTcp client = alertClients.removeByAddress(alertDevice.getAddress());
 
-        while (it.hasNext()) {
-            AlertClientTcp client = it.next();
-            AlertDeviceModel device = client.getAlertDevice();
+        // Shutdown the client
+        if (client != null) {
+            if (client.isRunning()) {
+                client.shutdown();
+            }
+            client.getAlertDevice().setRegistered(false);
+        }
+
+        AlertMetrics.getInstance().removeDeviceMetrics(alertDevice.getAddress());
+
+        // Remove the device from the persistent storage
+        recordDevice(alertDevice.getAddress());
+    }
+
+    /**
+     * Records in the registry whether the pool currently contains a device with the specified
+     * address. Since the current state is recorded while the registry is locked, the registry
+     * matches the pool even if devices are added and removed by several threads.
+     *
+     * @param address Address of the device that has been added or removed.
+     */
+    private void recordDevice(String address) {
+        AlertDeviceRegistry deviceRegistry = registry;
 
-            // Shutdown the previous client and remove it from the pool
-            if ( device.getAddress().equals(alertDevice.getAddress()) ) {
-                if (client.isRunning()) {
-                    client.shutdown();
+        if (deviceRegistry != null) {
+            synchronized (deviceRegistry) {
+                AlertDeviceModel device = alertClients.getDeviceByAddress(address);
+
+                if (device != null) {
+                    deviceRegistry.recordAdded(device);
+                }
+                else {
+                    deviceRegistry.recordRemoved(address);
                 }
-                device.setRegistered(false);
-                it.remove();
             }
         }
     }
 
     /**
-     * Starts a new thread the runs the AlertClientTcp object for a specified device.
-     * Thereby a connection to the device is established and communication with the device is
-     * possible.
+     * Starts a new thread (or attaches to the selector thread) that runs the AlertClientTcp
+     * object for a specified device. Thereby a connection to the device is established and
+     * communication with the device is possible.
      *
      * @param alertDevice Alert device
      */
     public void startClient(AlertDeviceModel alertDevice) {
 
         // Find the AlertClientTcp object for the device address
-        for (AlertClientTcp client:alertClients) {
-            AlertDeviceModel device = client.getAlertDevice();
+        AlertClientTcp client = alertClients.getByAddress(alertDevice.getAddress());
 
-            if ( device.getAddress().equals(alertDevice.getAddress()) ) {
-                // Start a thread for this device
-                if (!client.isRunning()) {
-                    new Thread(client).start();
-                }
-                break;
-            }
+        // Start a thread for this device
+        if (client != null && !client.isRunning()) {
+            runClient(client);
         }
     }
 
     public void stopClient(AlertDeviceModel alertDevice) {
         // Find the AlertClientTcp object for the device address
-        for (AlertClientTcp client:alertClients) {
-            AlertDeviceModel device = client.getAlertDevice();
+        AlertClientTcp client = alertClients.getByAddress(alertDevice.getAddress());
 
-            if ( device.getAddress().equals(alertDevice.getAddress()) ) {
-                // Start a thread for this device
-                if (client.isRunning()) {
-                    client.shutdown();
-                }
-                break;
-            }
+        // Stop the client of this device
+        if (client != null && client.isRunning()) {
+            client.shutdown();
         }
     }
 
@@ -255,27 +760,88 @@ public class AlertClientPool implements AlertDeviceScanTcp.AlertDeviceScanListen
      * that they can be restarted.
      */
     public void stopAllClients() {
-        Iterator<AlertClientTcp> it = alertClients.iterator();
-
-        while (it.hasNext()) {
-            AlertClientTcp client = it.next();
+        for (AlertClientTcp client : alertClients.getValues()) {
             client.shutdown();
         }
     }
 
     /**
-     * Starts new threads for all devices in the pool that are not active.
+     * Starts new threads (or attaches to the selector thread) for all devices in the pool that
+     * are not active.
      */
     public void startAllClients() {
-        Iterator<AlertClientTcp> it = alertClients.iterator();
+        for (AlertClientTcp client : alertClients.getValues()) {
+            if (!client.isRunning()) {
+                runClient(client);
+            }
+        }
+    }
 
-        while (it.hasNext()) {
-            AlertClientTcp client = it.next();
+    /**
+     * Executes the client either by the shared selector or in a new thread depending on the
+     * selector mode.
+     *
+     * @param client Client to be executed.
+     */
+    private synchronized void runClient(AlertClientTcp client) {
+        // Connect immediately, even if earlier attempts have failed
+        client.getReconnectPolicy().reset();
+
+        if (selectorModeEnabled) {
+            // Start the selector thread on first use or after it has been stopped
+            if (clientSelector == null || !clientSelector.isRunning()) {
+                clientSelector = new AlertClientSelector();
+                getExecutor().execute(clientSelector);
+            }
 
-            if (!client.isRunning()) {
-                new Thread(client).start();
+            clientSelector.attach(client);
+        }
+        else {
+            client.start(getExecutor());
+        }
+    }
+
+    /**
+     * Returns the executor that runs the client sessions, the selector, and the scans, e.g. to
+     * read its metrics. The executor is created on first use.
+     *
+     * @return Executor of the pool.
+     */
+    public synchronized AlertExecutor getExecutor() {
+        if (executor == null) {
+            executor = new AlertExecutor("AlertClientPool", executorThreadsMax);
+        }
+
+        return executor;
+    }
+
+    /**
+     * Stops the scan and all clients, keeps the devices in the pool, and waits until all
+     * threads of the pool have finished. Clients and scans can be started again afterwards.
+     *
+     * @return True, if all threads have finished in time.
+     */
+    public boolean shutdown() {
+        stopScan();
+        stopAllClients();
+
+        // Close the connections of the scans that no client has taken over
+        AlertConnectionCache.getInstance().clear();
+
+        AlertExecutor stoppedExecutor;
+
+        synchronized (this) {
+            if (clientSelector != null) {
+                clientSelector.shutdown();
+                clientSelector = null;
             }
+
+            stoppedExecutor = executor;
+            executor = null;
         }
+
+        // Wait outside of the lock since finishing tasks may call into the pool
+        return stoppedExecutor == null || stoppedExecutor.shutdownAndJoin(TIME_SHUTDOWN_MAX);
     }
 
     /**
@@ -283,10 +849,7 @@ public class AlertClientPool implements AlertDeviceScanTcp.AlertDeviceScanListen
      * the pool.
      */
     public void stopAllClientsAndRemove() {
-        Iterator<AlertClientTcp> it = alertClients.iterator();
-
-        while (it.hasNext()) {
-            AlertClientTcp client = it.next();
+        for (AlertClientTcp client : alertClients.clear()) {
 
             if (client.isRunning()) {
                 client.shutdown();
@@ -294,7 +857,12 @@ public class AlertClientPool implements AlertDeviceScanTcp.AlertDeviceScanListen
 
             client.getAlertDevice().setRegistered(false);
 
-            it.remove();
+            AlertMetrics.getInstance().removeDeviceMetrics(client.getAlertDevice().getAddress());
+
+            // Remove the device from the persistent storage
+            if (registry != null) {
+                registry.recordRemoved(client.getAlertDevice().getAddress());
+            }
         }
     }
 
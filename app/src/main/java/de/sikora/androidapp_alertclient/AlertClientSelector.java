@@ -0,0 +1,520 @@
+package de.sikora.androidapp_alertclient;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drives the communication with any number of alert devices from a single thread.
+ *
+ * Instead of running each AlertClientTcp object in its own thread, the clients are attached to
+ * this selector which multiplexes connect, read, write and keep-alive of all devices over
+ * non-blocking socket channels.
+ */
+public class AlertClientSelector implements Runnable {
+
+    // Tag for log messages generated by this class
+    private static final String TAG = AlertClientSelector.class.getSimpleName();
+
+    // Size of the receive buffer shared by all connections
+    private static final int RX_BUFFER_SIZE = 256;
+
+    // Size of the transmit buffer of each connection
+    private static final int TX_BUFFER_SIZE = 64;
+
+    // Clients that shall be attached to the selector
+    private final ConcurrentLinkedQueue<AlertClientTcp> attachQueue = new ConcurrentLinkedQueue<>();
+
+    // Clients that shall be detached from the selector
+    private final ConcurrentLinkedQueue<AlertClientTcp> detachQueue = new ConcurrentLinkedQueue<>();
+
+    // Sessions of all attached clients, only accessed by the selector thread
+    private final Map<AlertClientTcp, Session> sessions = new HashMap<>();
+
+    // Receive buffer shared by all connections, only accessed by the selector thread
+    private final ByteBuffer rxBuffer = ByteBuffer.allocate(RX_BUFFER_SIZE);
+
+    // Flag that is used to prevent multiple threads to execute the run method concurrently
+    private final AtomicBoolean busy = new AtomicBoolean(false);
+
+    // Selector that monitors the channels of all attached clients
+    private volatile Selector selector = null;
+
+    // Flag that is used to stop the run() method
+    private volatile boolean runSelector = true;
+
+
+    /**
+     * Returns the state of the selector.
+     *
+     * @return True, if the selector thread is active.
+     */
+    public boolean isRunning() {
+        return runSelector;
+    }
+
+    /**
+     * Attaches a client to this selector. The selector connects to the alert device of the
+     * client and performs the communication until the client is shut down.
+     *
+     * @param client Client to be attached.
+     */
+    public void attach(AlertClientTcp client) {
+        client.attachSelector(this);
+        attachQueue.add(client);
+        wakeup();
+    }
+
+    /**
+     * Detaches a client from this selector and closes its connection. Called by
+     * AlertClientTcp.shutdown().
+     *
+     * @param client Client to be detached.
+     */
+    void detach(AlertClientTcp client) {
+        detachQueue.add(client);
+        wakeup();
+    }
+
+    /**
+     * Wakes up the selector thread, e.g. after values have been queued for sending.
+     */
+    public void wakeup() {
+        Selector sel = selector;
+
+        if (sel != null) {
+            sel.wakeup();
+        }
+    }
+
+    /**
+     * Stops the selector thread. All connections are closed.
+     */
+    public void shutdown() {
+        runSelector = false;
+        wakeup();
+    }
+
+    /**
+     * Performs the network tasks of all attached clients.
+     */
+    @Override
+    public void run() {
+        // Set Thread priority to background
+        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+
+        if ( !busy.compareAndSet(false, true) ) {
+            AlertLog.w(TAG, "Selector thread is already running.");
+            return;
+        }
+
+        try {
+            selector = Selector.open();
+
+            AlertLog.i(TAG, "Selector started.");
+
+            while (runSelector) {
+                processDetachRequests();
+                processAttachRequests();
+
+                long curTime = System.currentTimeMillis();
+                long nextDue = Long.MAX_VALUE;
+
+                // Service timers and output queues of all sessions
+                for (Session session : sessions.values()) {
+                    nextDue = Math.min(nextDue, serviceSession(session, curTime));
+                }
+
+                // Wait for network events or until the next timer is due
+                if (nextDue == Long.MAX_VALUE) {
+                    selector.select();
+                }
+                else if (nextDue > curTime) {
+                    selector.select(nextDue - curTime);
+                }
+                else {
+                    selector.selectNow();
+                }
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    Session session = (Session) key.attachment();
+
+                    if (key.isValid() && key.isConnectable()) {
+                        finishConnect(session);
+                    }
+
+                    if (key.isValid() && key.isReadable()) {
+                        receive(session);
+                    }
+
+                    if (key.isValid() && key.isWritable()) {
+                        send(session);
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            AlertLog.e(TAG, "Selector failure.", e);
+        }
+        catch (Exception e) {
+            AlertLog.e(TAG, "Unexpected failure.", e);
+        }
+        finally {
+            runSelector = false;
+
+            AlertLog.i(TAG, "Stopping the selector.");
+
+            // Close all connections and release the clients so that they can be restarted
+            for (Session session : sessions.values()) {
+                close(session);
+                session.client.getAlertDevice().removeListener(session.client);
+                session.client.shutdown();
+            }
+
+            AlertClientTcp client;
+
+            while ((client = attachQueue.poll()) != null) {
+                client.shutdown();
+            }
+
+            sessions.clear();
+            detachQueue.clear();
+
+            if (selector != null) {
+                try {
+                    selector.close();
+                }
+                catch (IOException e) {
+                    // Failed to close
+                }
+                selector = null;
+            }
+
+            busy.set(false);
+        }
+    }
+
+    private void processAttachRequests() {
+        AlertClientTcp client;
+
+        while ((client = attachQueue.poll()) != null) {
+            // Ignore clients that have already been shut down or are already attached
+            if (client.isRunning() && !sessions.containsKey(client)) {
+                Session session = new Session(client);
+                sessions.put(client, session);
+
+                // Add the client as listener of the alert device object
+                client.getAlertDevice().addListener(client);
+            }
+        }
+    }
+
+    private void processDetachRequests() {
+        AlertClientTcp client;
+
+        while ((client = detachQueue.poll()) != null) {
+            Session session = sessions.remove(client);
+
+            if (session != null) {
+                client.getAlertDevice().removeListener(client);
+                close(session);
+            }
+        }
+    }
+
+    /**
+     * Connects, sends queued values, and checks the timers of a session.
+     *
+     * @return Time at which the session needs to be serviced next.
+     */
+    private long serviceSession(Session session, long curTime) {
+        String tagExt = session.tag;
+
+        AlertReconnectPolicy reconnectPolicy = session.client.getReconnectPolicy();
+
+        if (session.channel == null) {
+            if (curTime >= reconnectPolicy.getNextAttemptTime()) {
+                reconnectPolicy.onAttempt(curTime);
+                connect(session, curTime);
+            }
+        }
+
+        if (session.channel == null) {
+            return reconnectPolicy.getNextAttemptTime();
+        }
+
+        if (!session.connected) {
+            // Connection is pending, the selector reports when it is completed
+            if (curTime >= session.connectDeadline) {
+                AlertLog.i(tagExt, "Connection attempt timed out.");
+                closeAndRetry(session, curTime);
+                return reconnectPolicy.getNextAttemptTime();
+            }
+            return session.connectDeadline;
+        }
+
+        try {
+            session.client.checkResponseTimeout(curTime, tagExt);
+
+            // Move all queued values into the transmit buffer and send them with a single write
+            int txValue;
+
+            while (session.txBuffer.hasRemaining()
+                    && (txValue = session.client.takeTxValue(curTime, tagExt)) >= 0) {
+                session.txBuffer.put((byte) txValue);
+            }
+
+            send(session);
+        }
+        catch (IOException e) {
+            AlertLog.i(tagExt, "Communication failure.", e);
+            closeAndRetry(session, curTime);
+            return reconnectPolicy.getNextAttemptTime();
+        }
+
+        return session.client.getNextTimerDue();
+    }
+
+    private void connect(Session session, long curTime) {
+        AlertDeviceModel device = session.client.getAlertDevice();
+        String tagExt = session.tag;
+
+        try {
+            if (AlertLog.isLoggable(Log.INFO)) {
+                AlertLog.i(tagExt, "Trying to connect to Alert Server " + device.getAddress()
+                        + ":" + device.getPort());
+            }
+
+            // Take over the connection of a scan that has just detected the device
+            if (adoptScanConnection(session)) {
+                return;
+            }
+
+            session.channel = SocketChannel.open();
+            session.channel.configureBlocking(false);
+
+            // Send small writes immediately instead of waiting for more data
+            session.channel.socket().setTcpNoDelay(true);
+
+            InetSocketAddress serverAddr = new InetSocketAddress(device.getAddress(),
+                    device.getPort());
+
+            if (serverAddr.isUnresolved()) {
+                throw new IOException("Could not find Alert Server.");
+            }
+
+            session.connectDeadline = curTime
+                    + session.client.getReconnectPolicy().getConnectTimeout();
+
+            if (session.channel.connect(serverAddr)) {
+                session.key = session.channel.register(selector, SelectionKey.OP_READ, session);
+                onConnected(session);
+            }
+            else {
+                session.key = session.channel.register(selector, SelectionKey.OP_CONNECT, session);
+            }
+        }
+        catch (IOException e) {
+            AlertLog.i(tagExt, "Could not connect to Alert Server.");
+            closeAndRetry(session, curTime);
+        }
+    }
+
+    /**
+     * Takes over the connection parked by a non-blocking scan for the device of a session.
+     * Connections of blocking scans have no channel and are closed.
+     *
+     * @return True, if the session is connected.
+     * @throws IOException If the channel cannot be registered with the selector.
+     */
+    private boolean adoptScanConnection(Session session) throws IOException {
+        AlertDeviceModel device = session.client.getAlertDevice();
+        Socket socket = AlertConnectionCache.getInstance().take(device.getAddress(),
+                device.getPort());
+
+        if (socket == null) {
+            return false;
+        }
+
+        if (socket.getChannel() == null) {
+            socket.close();
+            return false;
+        }
+
+        session.channel = socket.getChannel();
+        session.channel.configureBlocking(false);
+        session.channel.socket().setTcpNoDelay(true);
+        session.key = session.channel.register(selector, SelectionKey.OP_READ, session);
+
+        AlertLog.i(session.tag, "Took over the connection of the device scan.");
+
+        onConnected(session);
+
+        return true;
+    }
+
+    private void finishConnect(Session session) {
+        try {
+            if (session.channel.finishConnect()) {
+                session.key.interestOps(SelectionKey.OP_READ);
+                onConnected(session);
+            }
+        }
+        catch (IOException e) {
+            AlertLog.i(session.tag, "Could not connect to Alert Server.");
+            closeAndRetry(session, System.currentTimeMillis());
+        }
+    }
+
+    private void onConnected(Session session) {
+        AlertLog.i(session.tag, "Connected to Alert Server.");
+
+        session.connected = true;
+        session.client.getReconnectPolicy().onConnected();
+        session.client.getMetrics().recordConnected();
+        session.client.onChannelStateChanged(true);
+    }
+
+    private void receive(Session session) {
+        long curTime = System.currentTimeMillis();
+        String tagExt = session.tag;
+
+        try {
+            rxBuffer.clear();
+
+            int numRead = session.channel.read(rxBuffer);
+
+            if (numRead < 0) {
+                throw new IOException("Connection closed by Alert Server.");
+            }
+
+            rxBuffer.flip();
+
+            while (rxBuffer.hasRemaining()) {
+                session.client.processRxValue(rxBuffer.get() & 0xFF, curTime, tagExt);
+            }
+        }
+        catch (IOException e) {
+            AlertLog.i(tagExt, "Communication failure.", e);
+            closeAndRetry(session, curTime);
+        }
+    }
+
+    private void send(Session session) {
+        try {
+            session.txBuffer.flip();
+
+            if (session.txBuffer.hasRemaining()) {
+                session.channel.write(session.txBuffer);
+            }
+
+            // Wait for the channel to become writable if not everything could be sent
+            if (session.txBuffer.hasRemaining()) {
+                session.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+            else {
+                session.key.interestOps(SelectionKey.OP_READ);
+                session.client.onTxWritten();
+            }
+
+            session.txBuffer.compact();
+        }
+        catch (IOException e) {
+            AlertLog.i(session.tag, "Communication failure.", e);
+            closeAndRetry(session, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Closes the connection of a session and lets the reconnect policy of the client decide
+     * when the next connection attempt is made.
+     */
+    private void closeAndRetry(Session session, long curTime) {
+        AlertReconnectPolicy reconnectPolicy = session.client.getReconnectPolicy();
+        boolean wasConnected = session.connected;
+
+        close(session);
+
+        if (wasConnected) {
+            reconnectPolicy.onConnectionLost(curTime);
+            session.client.getMetrics().recordDisconnected();
+        }
+        else {
+            session.client.getMetrics().recordConnectFailed();
+
+            long nextAttemptTime = reconnectPolicy.onConnectFailed(curTime);
+
+            if (AlertLog.isLoggable(Log.INFO)) {
+                AlertLog.i(session.tag, "Next connection attempt in " + (nextAttemptTime - curTime)
+                        + " ms (" + reconnectPolicy.getCircuitState() + ").");
+            }
+        }
+    }
+
+    private void close(Session session) {
+        if (session.key != null) {
+            session.key.cancel();
+            session.key = null;
+        }
+
+        if (session.channel != null) {
+            try {
+                session.channel.close();
+            }
+            catch (IOException e) {
+                // Failed to close
+            }
+            finally {
+                session.channel = null;
+                session.txBuffer.clear();
+
+                AlertLog.i(session.tag, "Socket closed.");
+
+                session.connected = false;
+                session.client.onChannelStateChanged(false);
+            }
+        }
+    }
+
+    /**
+     * Connection state of a client that is attached to the selector.
+     */
+    private static class Session {
+
+        private final AlertClientTcp client;
+
+        private final ByteBuffer txBuffer = ByteBuffer.allocate(TX_BUFFER_SIZE);
+
+        // Tag for log messages of this session
+        private final String tag;
+
+        private SocketChannel channel;
+
+        private SelectionKey key;
+
+        private boolean connected;
+
+        private long connectDeadline;
+
+        Session(AlertClientTcp client) {
+            this.client = client;
+            this.tag = TAG + "@" + client.getAlertDevice().getAddress();
+        }
+    }
+}
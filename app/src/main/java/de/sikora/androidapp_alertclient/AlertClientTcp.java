@@ -6,39 +6,56 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 
 import java.io.IOException;
 
-import java.util.LinkedList;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Connects to an alert device and performs the communication with the device.
  *
- * Network tasks are performed within the run method.
+ * Network tasks are performed either within the run method or, if the client has been
+ * attached to an {@link AlertClientSelector}, by the selector thread.
  *
  */
 public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateListener {
 
     // Value that is sent to the server to read the current alert level
-    static final int CMD_READ_REQUEST = 3;
+    static final int CMD_READ_REQUEST = AlertProtocol.CMD_READ_REQUEST;
 
     // Value that is sent to the server to read the device id
-    static final int CMD_ID_REQUEST = 4;
+    static final int CMD_ID_REQUEST = AlertProtocol.CMD_ID_REQUEST;
 
     // Length of a device id in bytes
-    static final int ID_NUM_BYTES = 6;
+    static final int ID_NUM_BYTES = AlertProtocol.ID_NUM_BYTES;
 
-    // Sleep time after connection failure
-    private static final long TIME_SLEEP_AFTER_CON_FAILURE = 5000;
+    // Time for which a read from the socket blocks before queued values are sent
+    private static final int TIME_RX_TIMEOUT = 50;
 
-    // Sleep time after performing network input/output over the socket
-    private static final long TIME_SLEEP_AFTER_IO = 100;
+    // Size of the buffer into which received values are drained
+    private static final int RX_BUFFER_SIZE = 64;
 
-    // Time after which the client sends a read request to the server
-    private static final long TIME_READ_REQUEST_CYCLE = 2500;
+    // Default idle time after which the client sends a read request to the server
+    private static final long TIME_KEEP_ALIVE_IDLE_MIN = 2500;
+
+    // Default idle time up to which the keep-alive interval grows while the server is stable
+    private static final long TIME_KEEP_ALIVE_IDLE_MAX = 10000;
+
+    // Response time up to which the server is considered stable
+    private static final long TIME_READ_RESPONSE_STABLE = 250;
+
+    // Maximum deviation of the keep-alive interval from the idle time in percent
+    private static final int KEEP_ALIVE_JITTER_PERCENT = 10;
 
     // Time after which the server should respond after a read request
     private static final long TIME_READ_RESPONSE_MAX = 1000;
@@ -46,38 +63,118 @@ public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateList
     // Number of failed server responses at which the connection is considered broken
     private static final int NUM_FAILED_RESPONSES_MAX = 3;
 
+    // Waiting time for the next connection attempt above which a session releases its thread
+    private static final long TIME_SESSION_PARK_MIN = 5000;
+
+    // Thread that resumes parked sessions when their next connection attempt is due
+    private static Timer resumeTimer = null;
+
+    // Thread that writes values queued for sessions while they wait for received values
+    private static Timer txWriterTimer = null;
+
     // Tag for log messages generated by this class
     private static final String TAG = AlertClientTcp.class.getSimpleName();
 
     // Representation of the alert server that this client connects to
     private AlertDeviceModel alertDevice;
 
+    // Maximum number of values waiting to be sent to the server
+    private static final int OUTPUT_QUEUE_CAPACITY = 32;
+
     // Message queue: values to be sent to the server
-    private final LinkedList<Integer> alertOutputBuffer = new LinkedList<>();
+    private final AlertCommandQueue alertOutputBuffer = new AlertCommandQueue(
+            OUTPUT_QUEUE_CAPACITY, AlertCommandQueue.OverflowPolicy.DROP_OLDEST);
+
+    // Most recent alert level waiting to be sent if alert levels are coalesced
+    private final AtomicInteger pendingAlertLevel = new AtomicInteger(AlertCommandQueue.EMPTY);
+
+    // Flag indicating that an alert level has been taken for sending but not written yet,
+    // accessed by the thread driving the session or, holding txLock, by the writer thread
+    private boolean levelTaken = false;
+
+    // Number of writes to the alert device that contained an alert level
+    private final AtomicLong numLevelWrites = new AtomicLong(0);
+
+    // Flag if only the most recent alert level is sent instead of every intermediate level
+    private volatile boolean coalesceAlertLevels = true;
+
+    // Thread in which the run() method of the AlertClientTcp object is executed, null if no
+    // session is running
+    private volatile Thread alertClientThread = null;
 
-    // Thread in which the run() method of the AlertClientTcp object is executed
-    private Thread alertClientThread = null;
+    // Task of the session that has been handed to the executor last
+    private volatile FutureTask<Void> sessionTask = null;
 
     // Flag that is used to stop the run() method
-    private boolean runClient;
+    private volatile boolean runClient;
 
-    // Flag that is used to prevent multiple threads to run concurrently
-    private final AtomicBoolean alertClientBusy = new AtomicBoolean(false);
+    // Selector that drives this client if it does not run in its own thread
+    private volatile AlertClientSelector alertSelector = null;
+
+    // Decides when connection attempts are made
+    private final AlertReconnectPolicy reconnectPolicy = new AlertReconnectPolicy();
+
+    // Latency and health metrics of the connection
+    private final AlertDeviceMetrics metrics;
+
+    // Tag for log messages of the current session
+    private volatile String logTag;
+
+    // Flag indicating that a session has been handed to the executor and has not finished yet,
+    // so that at most one thread runs this client
+    private final AtomicBoolean sessionStarted = new AtomicBoolean(false);
+
+    // Executor running the sessions of this client, null if driven by a selector
+    private volatile AlertExecutor sessionExecutor = null;
+
+    // Task that resumes the parked session, null if not parked, guarded by this
+    private TimerTask resumeTask = null;
 
     // Client socket for communicating with the Alert Server
     private Socket alertSocket = null;
 
     // Output stream to Alert Server
-    private OutputStream alertOut = null;
+    private volatile OutputStream alertOut = null;
+
+    // Lock held while values are taken and written to the output stream, by the session or by
+    // the writer thread
+    private final ReentrantLock txLock = new ReentrantLock();
+
+    // Flag indicating that values have been handed to the writer thread but not written yet
+    private final AtomicBoolean txHandOffPending = new AtomicBoolean(false);
 
     // Input stream from Alert Server
     private InputStream alertIn = null;
 
+    // Buffer for values received from the Alert Server
+    private final byte[] alertRxBuffer = new byte[RX_BUFFER_SIZE];
+
+    // Buffer for values sent to the Alert Server: queued values, pending level and read request,
+    // guarded by txLock
+    private final byte[] alertTxBuffer = new byte[OUTPUT_QUEUE_CAPACITY + 2];
+
     // Timestamp of last request to the server
-    private long lastReadRequestTime;
+    private volatile long lastReadRequestTime;
 
     // Flag if client is waiting for a response from server
-    private boolean waitingForResponse = false;
+    private volatile boolean waitingForResponse = false;
+
+    // Timer of this client in the keep-alive scheduler
+    private final AlertKeepAliveScheduler.Timer keepAliveTimer =
+            new AlertKeepAliveScheduler.Timer(this);
+
+    // Configured minimum and maximum idle time before a read request is sent
+    private volatile long keepAliveIdleMin = TIME_KEEP_ALIVE_IDLE_MIN;
+    private volatile long keepAliveIdleMax = TIME_KEEP_ALIVE_IDLE_MAX;
+
+    // Current idle time before a read request is sent, including jitter
+    private volatile long keepAliveIdle = TIME_KEEP_ALIVE_IDLE_MIN;
+
+    // Point in time at which the next read request is due if nothing is received until then
+    private volatile long keepAliveDue;
+
+    // State of the random generator used for the jitter
+    private int jitterSeed = System.identityHashCode(this) | 1;
 
     // Number of failed responses from the server
     private int numFailedResponses = 0;
@@ -98,6 +195,8 @@ public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateList
      */
     public AlertClientTcp(AlertDeviceModel alertDevice) {
         this.alertDevice = alertDevice;
+        this.metrics = AlertMetrics.getInstance().getDeviceMetrics(alertDevice.getAddress());
+        this.logTag = TAG + "@" + alertDevice.getAddress();
     }
 
     public boolean isRunning() {
@@ -110,17 +209,118 @@ public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateList
      * @param alertLevel Alert level to be sent to the Alert Server.
      */
     private void writeAlertLevel(final int alertLevel) {
-        synchronized (alertOutputBuffer) {
-            alertOutputBuffer.addLast(alertLevel);
+        if (coalesceAlertLevels) {
+            // Replace a level that has not been sent yet
+            pendingAlertLevel.set(alertLevel);
+        }
+        else {
+            alertOutputBuffer.add(alertLevel);
         }
+
+        metrics.recordQueueDepth(getOutputQueueDepth(), alertOutputBuffer.getDropCount());
+
+        wakeupSender();
     }
 
     /**
      * Enqueues a request to be sent to the server to read the current alert level
      */
     private void requestAlertLevel() {
-        synchronized (alertOutputBuffer) {
-            alertOutputBuffer.addLast(CMD_READ_REQUEST);
+        alertOutputBuffer.add(CMD_READ_REQUEST);
+
+        metrics.recordQueueDepth(getOutputQueueDepth(), alertOutputBuffer.getDropCount());
+
+        wakeupSender();
+    }
+
+    /**
+     * Makes sure that queued values are sent without delay. A client driven by a selector is
+     * woken up by the selector. The thread of a session is blocked reading until values arrive
+     * or the read timeout expires, so the values are handed to the writer thread instead.
+     */
+    private void wakeupSender() {
+        if (alertSelector != null) {
+            wakeupSelector();
+        }
+        else if (alertOut != null && txHandOffPending.compareAndSet(false, true)) {
+            getTxWriterTimer().schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    handOffTxValues();
+                }
+            }, 0);
+        }
+    }
+
+    /**
+     * Writes the queued values for the session from the writer thread. If the session is
+     * writing at the same time, it sends the values itself.
+     */
+    private void handOffTxValues() {
+        txHandOffPending.set(false);
+
+        if (!txLock.tryLock()) {
+            return;
+        }
+
+        try {
+            sendTxValues(System.currentTimeMillis(), logTag);
+        }
+        catch (IOException e) {
+            // The session notices the failure when it reads or writes next
+            AlertLog.i(logTag, "Failed writing queued values.", e);
+        }
+        catch (RuntimeException e) {
+            // Keep the writer thread alive for the other sessions
+            AlertLog.e(logTag, "Unexpected failure while writing queued values.", e);
+        }
+        finally {
+            txLock.unlock();
+        }
+    }
+
+    /**
+     * Takes all queued values and sends them to the alert device with a single write. Called
+     * while holding txLock.
+     *
+     * @param curTime Current time in ms.
+     * @param tagExt  Tag for log messages.
+     * @throws IOException If the values cannot be written.
+     */
+    private void sendTxValues(long curTime, String tagExt) throws IOException {
+        OutputStream out = alertOut;
+
+        if (out == null) {
+            return;
+        }
+
+        // Drain all queued values into the transmit buffer
+        int numTx = 0;
+        int txValue;
+
+        while (numTx < alertTxBuffer.length
+                && (txValue = takeTxValue(curTime, tagExt)) >= 0) {
+            alertTxBuffer[numTx++] = (byte) txValue;
+        }
+
+        // Send the output values to the Alert Server with a single write
+        if (numTx > 0) {
+            out.write(alertTxBuffer, 0, numTx);
+            out.flush();
+
+            onTxWritten();
+        }
+    }
+
+    /**
+     * Wakes up the AlertClientSelector driving this client so that queued values are sent
+     * without delay.
+     */
+    private void wakeupSelector() {
+        AlertClientSelector selector = alertSelector;
+
+        if (selector != null) {
+            selector.wakeup();
         }
     }
 
@@ -128,33 +328,133 @@ public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateList
         return alertDevice;
     }
 
+    public AlertReconnectPolicy getReconnectPolicy() {
+        return reconnectPolicy;
+    }
+
+    public AlertDeviceMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
-     * Close the connection and release the members
+     * Closes the circuit of the reconnect policy so that a client waiting for its next
+     * connection attempt connects immediately.
      */
-    public void shutdown() {
-        String tagExt;
+    public void reconnectNow() {
+        reconnectPolicy.reset();
 
-        try {
-            tagExt = TAG + "@" + Thread.currentThread().getId();
+        // A parked session is resumed at once instead of at its next attempt time
+        if (cancelResume() && runClient) {
+            submitSession();
         }
-        catch (Exception e) {
-            tagExt = TAG + "@null";
+
+        wakeupSelector();
+    }
+
+    /**
+     * Enables or disables coalescing of alert levels. If enabled, an alert level that has not
+     * been sent yet is replaced by a newer one so that only the most recent level is sent.
+     * Otherwise, every level is queued and sent in order. Requests are always sent in order.
+     *
+     * @param enabled True, if alert levels shall be coalesced.
+     */
+    public void setCoalesceAlertLevels(boolean enabled) {
+        coalesceAlertLevels = enabled;
+    }
+
+    public boolean isCoalesceAlertLevels() {
+        return coalesceAlertLevels;
+    }
+
+    /**
+     * Sets the idle time after which a read request is sent to test the connection. Any value
+     * received from the alert device resets the idle time. Starting at the minimum, the idle
+     * time grows up to the maximum while the device responds quickly, and returns to the
+     * minimum as soon as a response is late or missing.
+     *
+     * @param minIdleTime Minimum idle time in ms.
+     * @param maxIdleTime Maximum idle time in ms.
+     */
+    public void setKeepAliveIdleTime(long minIdleTime, long maxIdleTime) {
+        if (minIdleTime <= 0 || maxIdleTime < minIdleTime) {
+            throw new IllegalArgumentException("Invalid idle time: " + minIdleTime + ", "
+                    + maxIdleTime);
         }
 
-        Log.i(tagExt, "Shutdown started.");
+        keepAliveIdleMin = minIdleTime;
+        keepAliveIdleMax = maxIdleTime;
+        keepAliveIdle = jitter(minIdleTime);
+    }
+
+    /**
+     * Returns the current idle time after which a read request is sent.
+     *
+     * @return Idle time in ms.
+     */
+    public long getKeepAliveIdleTime() {
+        return keepAliveIdle;
+    }
+
+    /**
+     * Returns the number of values waiting to be sent to the alert device.
+     *
+     * @return Number of queued values.
+     */
+    public int getOutputQueueDepth() {
+        int depth = alertOutputBuffer.size();
+
+        if (pendingAlertLevel.get() != AlertCommandQueue.EMPTY) {
+            depth += 1;
+        }
+
+        return depth;
+    }
+
+    /**
+     * Returns the number of values that have been dropped because the output queue was full.
+     *
+     * @return Number of dropped values.
+     */
+    public long getOutputDropCount() {
+        return alertOutputBuffer.getDropCount();
+    }
+
+    /**
+     * Close the connection and release the members
+     */
+    public void shutdown() {
+        String tagExt = logTag;
+
+        AlertLog.i(tagExt, "Shutdown started.");
 
         // Tell the run method to stop
         runClient = false;
 
-        // Interrupt the thread in case it is sleeping
-        if (alertClientThread != null) {
-            alertClientThread.interrupt();
+        // A parked session has no thread that could clean up
+        if (cancelResume()) {
+            alertDevice.removeListener(this);
         }
 
-        // Clear the output queue
-        synchronized (alertOutputBuffer) {
-            alertOutputBuffer.clear();
+        // Interrupt the session in case it is sleeping. The session is cancelled through its
+        // task so that no later task of the same pooled thread is interrupted. A queued
+        // session is not cancelled, it finishes at once when it runs.
+        FutureTask<Void> task = sessionTask;
+
+        if (task != null && alertClientThread != null) {
+            task.cancel(true);
         }
+
+        // Let the selector close the connection in case the client is driven by a selector
+        AlertClientSelector selector = alertSelector;
+
+        if (selector != null) {
+            alertSelector = null;
+            selector.detach(this);
+        }
+
+        // Clear the output queue
+        pendingAlertLevel.set(AlertCommandQueue.EMPTY);
+        alertOutputBuffer.clear();
     }
 
     /**
@@ -163,14 +463,7 @@ public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateList
      * @return True, if successfully connected to the alert device.
      */
     private boolean connect() {
-        String tagExt;
-
-        try {
-            tagExt = TAG + "@" + Thread.currentThread().getId();
-        }
-        catch (Exception e) {
-            tagExt = TAG + "@null";
-        }
+        String tagExt = logTag;
 
         // If a previous socket exists try to close it
         disconnect();
@@ -178,18 +471,45 @@ public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateList
         InetAddress serverAddr;
 
         try {
-            Log.i( tagExt, "Trying to connect to Alert Server " + alertDevice.getAddress()
-                    + ":" + alertDevice.getPort() );
+            if (AlertLog.isLoggable(Log.INFO)) {
+                AlertLog.i(tagExt, "Trying to connect to Alert Server " + alertDevice.getAddress()
+                        + ":" + alertDevice.getPort());
+            }
 
-            // Create InetAddress to connect to
-            serverAddr = InetAddress.getByName(alertDevice.getAddress());
+            // Take over the connection of a scan that has just detected the device
+            alertSocket = AlertConnectionCache.getInstance().take(alertDevice.getAddress(),
+                    alertDevice.getPort());
 
-            // Create a socket and connect to the Alert Server using the specified address and port
-            alertSocket = new Socket(serverAddr, alertDevice.getPort());
+            if (alertSocket != null) {
+                // The connection of a non-blocking scan is read with blocking streams
+                if (alertSocket.getChannel() != null) {
+                    alertSocket.getChannel().configureBlocking(true);
+                }
+
+                AlertLog.i(tagExt, "Took over the connection of the device scan.");
+            }
+            else {
+                // Create InetAddress to connect to
+                serverAddr = InetAddress.getByName(alertDevice.getAddress());
+
+                // Create a socket and connect to the Alert Server using the specified address
+                // and port
+                alertSocket = new Socket();
+                alertSocket.connect(new InetSocketAddress(serverAddr, alertDevice.getPort()),
+                        (int) reconnectPolicy.getConnectTimeout());
+            }
+
+            if (AlertLog.isLoggable(Log.INFO)) {
+                AlertLog.i(tagExt, "Connected to Alert Server. Local address: "
+                        + alertSocket.getLocalAddress() + ":" + alertSocket.getLocalPort()
+                        + ", Remote address: " + alertSocket.getRemoteSocketAddress());
+            }
 
-            Log.i( tagExt, "Connected to Alert Server. Local address: "
-                    + alertSocket.getLocalAddress() + ":" + alertSocket.getLocalPort()
-                    + ", Remote address: " + alertSocket.getRemoteSocketAddress() );
+            // Send small writes immediately instead of waiting for more data
+            alertSocket.setTcpNoDelay(true);
+
+            // Let reads block only for a limited time so that queued values can be sent
+            alertSocket.setSoTimeout(TIME_RX_TIMEOUT);
 
             // Get input stream from server
             alertIn = alertSocket.getInputStream();
@@ -199,9 +519,11 @@ public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateList
 
             // Set the flag indicating the a connection is established
             alertDevice.setConnectedAndNotify(true, this);
+
+            startKeepAlive(System.currentTimeMillis());
         }
         catch (UnknownHostException e) {
-            Log.i(tagExt, "Could not find Alert Server.");
+            AlertLog.i(tagExt, "Could not find Alert Server.");
 
             alertSocket = null;
             alertOut = null;
@@ -210,7 +532,16 @@ public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateList
             alertDevice.setConnectedAndNotify(false, this);
         }
         catch (IOException e) {
-            Log.i(tagExt, "Could not connect to Alert Server.");
+            AlertLog.i(tagExt, "Could not connect to Alert Server.");
+
+            if (alertSocket != null) {
+                try {
+                    alertSocket.close();
+                }
+                catch (IOException e2) {
+                    // Failed to close
+                }
+            }
 
             alertSocket = null;
             alertOut = null;
@@ -224,14 +555,7 @@ public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateList
     }
 
     private void disconnect() {
-        String tagExt;
-
-        try {
-            tagExt = TAG + "@" + Thread.currentThread().getId();
-        }
-        catch (Exception e) {
-            tagExt = TAG + "@null";
-        }
+        String tagExt = logTag;
 
         // If a previous socket exists try to close it
         if (alertSocket != null  && !alertSocket.isClosed()) {
@@ -242,7 +566,7 @@ public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateList
                 // Failed to close
             }
             finally {
-                Log.i(tagExt, "Socket closed.");
+                AlertLog.i(tagExt, "Socket closed.");
 
                 alertSocket = null;
                 alertOut = null;
@@ -250,6 +574,7 @@ public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateList
 
                 waitingForResponse = false;
                 numFailedResponses = 0;
+                levelTaken = false;
 
                 alertDevice.setConnectedAndNotify(false, this);
             }
@@ -257,36 +582,395 @@ public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateList
     }
 
     /**
-     * Performs the network tasks associated with the alert device.
+     * Processes a value that has been received from the alert device.
+     *
+     * @param rxValue Value received from the alert device.
+     * @param curTime Current time in ms.
+     * @param tagExt  Tag for log messages.
      */
-    public void run() {
-        // Set Thread priority to background
-        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+    void processRxValue(int rxValue, long curTime, String tagExt) {
+        if (AlertLog.isLoggable(Log.DEBUG)) {
+            if (waitingForResponse) {
+                AlertLog.d(tagExt, "Received '" + rxValue + "' from server ("
+                        + (curTime - lastReadRequestTime) + " ms).");
+            }
+            else {
+                AlertLog.d(tagExt, "Received '" + rxValue + "' from server.");
+            }
+        }
+
+        metrics.recordBytesIn(1);
+
+        if (waitingForResponse) {
+            metrics.recordResponseTime(curTime - lastReadRequestTime);
+
+            // Let the interval grow while the server responds quickly, otherwise tighten it
+            if (curTime - lastReadRequestTime <= TIME_READ_RESPONSE_STABLE) {
+                keepAliveIdle = jitter(Math.min(keepAliveIdle * 3 / 2, keepAliveIdleMax));
+            }
+            else {
+                keepAliveIdle = jitter(keepAliveIdleMin);
+            }
+        }
+
+        // Reset flag and fail counter in case a response has been due
+        waitingForResponse = false;
+        numFailedResponses = 0;
+
+        // Any received value shows that the connection works
+        keepAliveDue = curTime + keepAliveIdle;
+
+        // Update the alert state
+        alertDevice.setAlertLevelAndNotify(rxValue, this);
+    }
+
+    /**
+     * Checks whether the response to the last read request is overdue.
+     *
+     * @param curTime Current time in ms.
+     * @param tagExt  Tag for log messages.
+     * @throws IOException If the server failed to respond too many times in a row.
+     */
+    void checkResponseTimeout(long curTime, String tagExt) throws IOException {
+        if (waitingForResponse && curTime - lastReadRequestTime > TIME_READ_RESPONSE_MAX) {
+            waitingForResponse = false;
+            numFailedResponses += 1;
+
+            metrics.recordMissedResponse();
+
+            // Test the connection again after the minimum idle time
+            keepAliveIdle = jitter(keepAliveIdleMin);
+            keepAliveDue = curTime + keepAliveIdle;
+
+            if (AlertLog.isLoggable(Log.INFO)) {
+                AlertLog.i(tagExt, "Alert server failed to respond (count = "
+                        + numFailedResponses + ").");
+            }
+
+            // Raise an exception in case of too many failures
+            if (numFailedResponses >= NUM_FAILED_RESPONSES_MAX) {
+
+                // Reset the flag and counter
+                waitingForResponse = false;
+                numFailedResponses = 0;
+
+                throw new IOException("Exceeded maximum number of failed server responses.");
+            }
+        }
+    }
 
-        String tagExt;
+    /**
+     * Takes the next value that shall be sent to the alert device from the output queue.
+     *
+     * @param curTime Current time in ms.
+     * @param tagExt  Tag for log messages.
+     * @return Value to be sent or -1 if there is nothing to be sent.
+     */
+    int takeTxValue(long curTime, String tagExt) {
+        // Take the pending alert level first, then the next value from the output queue
+        int txValue = pendingAlertLevel.getAndSet(AlertCommandQueue.EMPTY);
+
+        if (txValue == AlertCommandQueue.EMPTY) {
+            txValue = alertOutputBuffer.poll();
+
+            if (txValue == CMD_READ_REQUEST && !waitingForResponse) {
+                // Set timestamp and flag in order to monitor the response
+                lastReadRequestTime = curTime;
+                waitingForResponse = true;
+            }
+        }
+
+        if (txValue != AlertCommandQueue.EMPTY) {
+            if (txValue != CMD_READ_REQUEST && txValue != CMD_ID_REQUEST) {
+                levelTaken = true;
+            }
+
+            if (AlertLog.isLoggable(Log.DEBUG)) {
+                AlertLog.d(tagExt, "Sending '" + txValue + "' to server.");
+            }
+
+            metrics.recordBytesOut(1);
+        }
+
+        return txValue;
+    }
+
+    /**
+     * Called after all values taken by <code>takeTxValue</code> have been written to the
+     * socket.
+     */
+    void onTxWritten() {
+        if (levelTaken) {
+            levelTaken = false;
+            numLevelWrites.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of writes to the alert device that contained an alert level. A level
+     * reported by the device can only be a response to a level sent before, if the number has
+     * grown since then.
+     *
+     * @return Number of writes.
+     */
+    public long getNumLevelWrites() {
+        return numLevelWrites.get();
+    }
+
+    /**
+     * Returns the point in time at which the next response check is due.
+     *
+     * @return Time in ms or Long.MAX_VALUE if no response is expected.
+     */
+    long getNextTimerDue() {
+        if (waitingForResponse) {
+            return lastReadRequestTime + TIME_READ_RESPONSE_MAX + 1;
+        }
+        else {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Starts the keep-alive timer after a connection has been established. The alert level is
+     * requested immediately, so that the client is synchronized right after connecting, and
+     * again after the minimum idle time unless the server responds.
+     *
+     * @param curTime Current time in ms.
+     */
+    private void startKeepAlive(long curTime) {
+        keepAliveIdle = jitter(keepAliveIdleMin);
+        keepAliveDue = curTime + keepAliveIdle;
+
+        requestAlertLevel();
+
+        AlertKeepAliveScheduler.getInstance().schedule(this);
+    }
+
+    /**
+     * Called by the AlertKeepAliveScheduler when the keep-alive timer of this client expires.
+     * If nothing has been received for the idle time, a read request is enqueued in order to:
+     * 1. Test the connection periodically
+     * 2. Keep the client synchronized (just in case something goes wrong)
+     *
+     * @param curTime Current time in ms.
+     * @return Time at which the timer shall expire next or -1 if it shall be stopped.
+     */
+    long onKeepAliveTimer(long curTime) {
+        if (!runClient || !alertDevice.isConnected()) {
+            // Restarted by the next connect
+            return -1;
+        }
+
+        long due = keepAliveDue;
+
+        if (due <= curTime) {
+            if (!waitingForResponse) {
+                requestAlertLevel();
+            }
+
+            due = curTime + keepAliveIdle;
+            keepAliveDue = due;
+        }
+
+        // Check again after the minimum idle time at the latest, since a missing response
+        // moves the due time forward
+        return Math.min(due, curTime + keepAliveIdleMin);
+    }
+
+    AlertKeepAliveScheduler.Timer getKeepAliveTimer() {
+        return keepAliveTimer;
+    }
+
+    long getKeepAliveDue() {
+        return keepAliveDue;
+    }
+
+    /**
+     * Varies an idle time randomly, so that the read requests of devices that have been
+     * connected at the same time spread out over time.
+     */
+    private long jitter(long idleTime) {
+        // Xorshift random generator
+        int seed = jitterSeed;
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        jitterSeed = seed;
+
+        long range = idleTime * KEEP_ALIVE_JITTER_PERCENT / 100;
+
+        if (range == 0) {
+            return idleTime;
+        }
+
+        return idleTime - range + ((seed & 0x7FFFFFFF) % (2 * range + 1));
+    }
+
+    /**
+     * Waits until values have been received from the alert device and drains all available
+     * values into the receive buffer in one pass.
+     *
+     * The call returns as soon as data arrives, at the latest when the read timeout expires.
+     *
+     * @return Number of values in the receive buffer, 0 if the read timeout expired.
+     * @throws IOException If the connection has been closed by the alert device or failed.
+     */
+    private int receive() throws IOException {
+        int numRx;
 
         try {
-            tagExt = TAG + "@" + Thread.currentThread().getId();
+            numRx = alertIn.read(alertRxBuffer, 0, alertRxBuffer.length);
         }
-        catch (Exception e) {
-            tagExt = TAG + "@null";
+        catch (SocketTimeoutException e) {
+            return 0;
         }
 
-        Log.i(tagExt, "Start run(): Checking busy flag.");
+        if (numRx < 0) {
+            throw new IOException("Connection closed by Alert Server.");
+        }
 
-        // While this runnable is active let the thread wait until the previous thread runs out
-        while ( !alertClientBusy.compareAndSet(false, true) ) {
-            Log.w(tagExt, "Start run(): Busy. Calling wait().");
-            try {
-                synchronized (alertClientBusy) {
-                    alertClientBusy.wait();
+        return numRx;
+    }
+
+    /**
+     * Called by the AlertClientSelector when a connection to the alert device has been
+     * established or lost.
+     *
+     * @param connected True, if the connection has been established.
+     */
+    void onChannelStateChanged(boolean connected) {
+        waitingForResponse = false;
+        numFailedResponses = 0;
+        levelTaken = false;
+
+        alertDevice.setConnectedAndNotify(connected, this);
+
+        if (connected) {
+            startKeepAlive(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Marks this client as running and driven by the specified AlertClientSelector instead of
+     * its own thread. Called by the selector when the client is attached.
+     *
+     * @param selector Selector that drives this client.
+     */
+    void attachSelector(AlertClientSelector selector) {
+        alertSelector = selector;
+        runClient = true;
+    }
+
+    /**
+     * Starts this client in a thread of the specified executor. The client is running from now
+     * on, also while its session waits for a free thread. Has no effect on a session that is
+     * queued or running already.
+     *
+     * @param executor Executor that runs the sessions of this client.
+     * @return True, if a new session has been handed to the executor.
+     */
+    boolean start(AlertExecutor executor) {
+        sessionExecutor = executor;
+        runClient = true;
+
+        cancelResume();
+
+        return submitSession();
+    }
+
+    /**
+     * Hands a session to the executor unless a session is queued or running already.
+     *
+     * @return True, if a new session has been handed to the executor.
+     */
+    private boolean submitSession() {
+        if (!sessionStarted.compareAndSet(false, true)) {
+            return false;
+        }
+
+        // The task is stored before it is handed over, so that it is known while it runs
+        FutureTask<Void> task = new FutureTask<>(this, null);
+        sessionTask = task;
+
+        if (!sessionExecutor.execute(task)) {
+            // The executor has been shut down
+            sessionTask = null;
+            sessionStarted.set(false);
+            runClient = false;
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Resumes the session after the specified time, so that no thread of the executor waits
+     * for the next connection attempt in the meantime.
+     *
+     * @param delay Time in ms after which the session is handed to the executor again.
+     */
+    private synchronized void scheduleResume(long delay) {
+        resumeTask = new TimerTask() {
+            @Override
+            public void run() {
+                // Unless the session has been resumed or stopped in the meantime
+                if (cancelResume()) {
+                    submitSession();
                 }
-            } catch (InterruptedException e) {
-                // Wakeup from sleep
             }
+        };
+
+        getResumeTimer().schedule(resumeTask, delay);
+    }
+
+    /**
+     * Cancels the task that resumes the parked session.
+     *
+     * @return True, if the session has been parked.
+     */
+    private synchronized boolean cancelResume() {
+        if (resumeTask == null) {
+            return false;
+        }
+
+        resumeTask.cancel();
+        resumeTask = null;
+
+        return true;
+    }
+
+    private static synchronized Timer getTxWriterTimer() {
+        if (txWriterTimer == null) {
+            txWriterTimer = new Timer(AlertClientTcp.class.getSimpleName() + "-Tx", true);
+        }
+
+        return txWriterTimer;
+    }
+
+    private static synchronized Timer getResumeTimer() {
+        if (resumeTimer == null) {
+            resumeTimer = new Timer(AlertClientTcp.class.getSimpleName(), true);
         }
 
-        Log.i(tagExt, "Start run(): Initialization.");
+        return resumeTimer;
+    }
+
+    /**
+     * Performs the network tasks associated with the alert device. Executed by a thread of the
+     * executor after the client has been started by <code>start</code>.
+     */
+    public void run() {
+        // Set Thread priority to background
+        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+
+        // Compute the tag of the log messages of this session once
+        logTag = TAG + "@" + Thread.currentThread().getId();
+
+        String tagExt = logTag;
+
+        AlertLog.i(tagExt, "Start run(): Initialization.");
 
         // Store the current Thread so that the shutdown method can interrupt it
         alertClientThread = Thread.currentThread();
@@ -294,9 +978,10 @@ public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateList
         // Add this object as listener of the alert device object
         this.alertDevice.addListener(this);
 
-        try {
-            runClient = true;
+        // Time after which a parked session is resumed, 0 if the session is not parked
+        long parkTime = 0;
 
+        try {
             // Repeat as long as the alertClientActive flag is true:
             // 1. Connect to server
             // 2. Communicate with server until connection is lost
@@ -306,18 +991,50 @@ public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateList
 
                 // Connect to Alert Server if possible
                 while (!connectOk && runClient) {
+                    // Release the thread if the next attempt is far away, e.g. while the
+                    // circuit is open
+                    long waitTime = reconnectPolicy.getNextAttemptTime()
+                            - System.currentTimeMillis();
+
+                    if (waitTime > TIME_SESSION_PARK_MIN) {
+                        parkTime = waitTime;
+                        break;
+                    }
+
+                    // Wait until the reconnect policy allows the next attempt
+                    try {
+                        reconnectPolicy.awaitNextAttempt();
+                    } catch (InterruptedException e) {
+                        // Wakeup from sleep
+                        continue;
+                    }
+
+                    reconnectPolicy.onAttempt(System.currentTimeMillis());
+
                     connectOk = connect();
 
-                    // In case of a connection failure wait for some time before next try
-                    if (!connectOk) {
-                        try {
-                            Thread.sleep(TIME_SLEEP_AFTER_CON_FAILURE);
-                        } catch (InterruptedException e) {
-                            // Wakeup from sleep
+                    if (connectOk) {
+                        reconnectPolicy.onConnected();
+                        metrics.recordConnected();
+                    }
+                    else {
+                        metrics.recordConnectFailed();
+
+                        long nextAttemptTime = reconnectPolicy.onConnectFailed(
+                                System.currentTimeMillis());
+
+                        if (AlertLog.isLoggable(Log.INFO)) {
+                            AlertLog.i(tagExt, "Next connection attempt in "
+                                    + (nextAttemptTime - System.currentTimeMillis()) + " ms ("
+                                    + reconnectPolicy.getCircuitState() + ").");
                         }
                     }
                 }
 
+                if (!connectOk) {
+                    break;
+                }
+
                 // Handle the communication with the server
                 try {
 
@@ -325,139 +1042,93 @@ public class AlertClientTcp implements Runnable, AlertDeviceModel.AlertStateList
 
                         /* --- 1. Receive --- */
 
-                        // Determine time since last message exchange with server
-                        long curTime = System.currentTimeMillis();
-                        long passedTimeReq = curTime - lastReadRequestTime;
-
-                        // Number of input values in input buffer
-                        int numRxAvailable = alertIn.available();
+                        // Wait until values arrive or the read timeout expires
+                        int numRx = receive();
 
-                        // Process next value received from the server
-                        if (numRxAvailable > 0) {
-                            Log.i(tagExt, "Rx bytes available: '" + numRxAvailable);
-
-                            int rxValue = alertIn.read();
+                        long curTime = System.currentTimeMillis();
 
-                            if (waitingForResponse) {
-                                Log.i(tagExt, "Received '" + rxValue + "' from server ("
-                                                + passedTimeReq + " ms).");
-                            }
-                            else {
-                                Log.i(tagExt, "Received '" + rxValue + "' from server.");
+                        // Process all values received from the server
+                        if (numRx > 0) {
+                            if (AlertLog.isLoggable(Log.DEBUG)) {
+                                AlertLog.d(tagExt, "Rx bytes received: " + numRx);
                             }
 
-                            // Reset flag and fail counter in case a response has been due
-                            waitingForResponse = false;
-                            numFailedResponses = 0;
-
-                            // Update the alert state
-                            alertDevice.setAlertLevelAndNotify(rxValue, this);
+                            for (int i = 0; i < numRx; i++) {
+                                processRxValue(alertRxBuffer[i] & 0xFF, curTime, tagExt);
+                            }
                         }
                         else {
                             // Check if response is overdue
-                            if (waitingForResponse && passedTimeReq > TIME_READ_RESPONSE_MAX) {
-                                waitingForResponse = false;
-                                numFailedResponses += 1;
-
-                                Log.i(tagExt, "Alert server failed to respond (count = "
-                                        + numFailedResponses + ").");
-
-                                // Raise an exception in case of too many failures
-                                if (numFailedResponses >= NUM_FAILED_RESPONSES_MAX) {
-
-                                    // Reset the flag and counter
-                                    waitingForResponse = false;
-                                    numFailedResponses = 0;
-
-                                    throw new IOException("Exceeded maximum number of failed server responses.");
-                                }
-                            }
+                            checkResponseTimeout(curTime, tagExt);
                         }
 
                         /* --- 2. Send --- */
 
-                        boolean isTxValue = false;
-                        int txValue = Integer.MAX_VALUE;
-
-                        // Obtain lock for output buffer and take next value
-                        synchronized (alertOutputBuffer) {
-                            if (!alertOutputBuffer.isEmpty()) {
-                                txValue = alertOutputBuffer.removeFirst();
-                                isTxValue = true;
-                            }
-                        }
-
-                        // Send the output value to the Alert Server
-                        if (isTxValue) {
-                            Log.i(tagExt, "Sending '" + txValue + "' to server.");
+                        // Send the values that have not been written by the writer thread
+                        txLock.lock();
 
-                            alertOut.write(txValue);
-                            alertOut.flush();
-                        }
-                        else {
-                            // In case there is no value to be sent, insert a read request to the
-                            // server in order to:
-                            // 1. Test the connection periodically
-                            // 2. Keep the client synchronized (just in case something goes wrong)
-                            if (passedTimeReq > TIME_READ_REQUEST_CYCLE) {
-
-                                Log.i(tagExt, "Sending read request (value = "
-                                        + CMD_READ_REQUEST + ") to server.");
-
-                                alertOut.write(CMD_READ_REQUEST);
-                                alertOut.flush();
-
-                                // Set timestamp and flag in order to monitor the response
-                                lastReadRequestTime = curTime;
-                                waitingForResponse = true;
-                            }
-                        }
-
-                        /* --- 3. Pause --- */
-
-                        // Pause the thread for some time after doing input/output
                         try {
-                            Thread.sleep(TIME_SLEEP_AFTER_IO);
-                        } catch (InterruptedException e) {
-                            // Wakeup from sleep
+                            sendTxValues(curTime, tagExt);
+                        }
+                        finally {
+                            txLock.unlock();
                         }
                     }
                 }
                 catch (IOException e) {
-                    Log.i(tagExt, "Communication failure.", e);
+                    AlertLog.i(tagExt, "Communication failure.", e);
                 }
                 finally {
                     // Close the socket before leaving this block
                     disconnect();
+
+                    reconnectPolicy.onConnectionLost(System.currentTimeMillis());
+                    metrics.recordDisconnected();
                 }
             }
 
         }
         catch (Exception e) {
-            Log.e(tagExt, "Unexpected failure.", e);
+            AlertLog.e(tagExt, "Unexpected failure.", e);
+
+            // Set run flag to false since the loop ended due to a failure
+            runClient = false;
         }
         finally {
-            // Set run flag to false in case the loop ended due to a failure
-            runClient = false;
-
             // Clean everything up before leaving the run() method
-            Log.i(tagExt, "Stopping the alert client.");
+            if (parkTime > 0) {
+                // Keep listening, so that alert levels set in the meantime are sent later
+                if (AlertLog.isLoggable(Log.INFO)) {
+                    AlertLog.i(tagExt, "Parking the alert client for " + parkTime + " ms.");
+                }
+            }
+            else {
+                AlertLog.i(tagExt, "Stopping the alert client.");
 
-            // Remove this object as listener from the alert device object
-            alertDevice.removeListener(this);
+                // Remove this object as listener from the alert device object
+                alertDevice.removeListener(this);
+            }
 
             // If there is still a connection close it
             disconnect();
 
-            Log.i(tagExt, "Finishing run()");
+            AlertLog.i(tagExt, "Finishing run()");
 
-            // Set the stored Thread of AlertClientTcp to null
+            // Set the stored Thread and task of the session to null
             alertClientThread = null;
+            sessionTask = null;
+
+            // Allow the next session to be handed to the executor
+            sessionStarted.set(false);
 
-            // Set busy flag to false to allow other threads to enter the run method
-            synchronized (alertClientBusy) {
-                alertClientBusy.set(false);
-                alertClientBusy.notify();
+            if (runClient) {
+                if (parkTime > 0) {
+                    scheduleResume(parkTime);
+                }
+                else {
+                    // Started again while this session was finishing
+                    submitSession();
+                }
             }
         }
     }
@@ -0,0 +1,198 @@
+package de.sikora.androidapp_alertclient;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free queue of int commands that are sent to an alert device.
+ *
+ * The queue is a ring buffer of primitive values. Any number of threads may add and take values
+ * concurrently without locking, and neither operation allocates memory. Each slot carries a
+ * sequence number that tells producers and consumers whether the slot is free or holds a value.
+ *
+ * When the queue is full, the configured {@link OverflowPolicy} decides which value is dropped.
+ * The number of dropped values is counted.
+ */
+public class AlertCommandQueue {
+
+    // Value returned by poll() if the queue is empty
+    public static final int EMPTY = -1;
+
+    /**
+     * Policy that is applied when a value is added to a full queue.
+     */
+    public enum OverflowPolicy {
+        // Remove the oldest queued value to make room for the new one
+        DROP_OLDEST,
+
+        // Discard the new value
+        DROP_NEWEST
+    }
+
+    // Values stored in the ring buffer
+    private final int[] values;
+
+    // Sequence number of each slot
+    private final AtomicLongArray sequences;
+
+    // Mask used to map a position to the index of a slot
+    private final int mask;
+
+    // Policy applied in case of overflow
+    private final OverflowPolicy overflowPolicy;
+
+    // Position at which the next value is added
+    private final AtomicLong enqueuePos = new AtomicLong(0);
+
+    // Position from which the next value is taken
+    private final AtomicLong dequeuePos = new AtomicLong(0);
+
+    // Number of values dropped due to overflow
+    private final AtomicLong dropCount = new AtomicLong(0);
+
+
+    /**
+     * Creates a new queue.
+     *
+     * @param capacity       Maximum number of queued values, must be a power of two.
+     * @param overflowPolicy Policy that is applied when a value is added to a full queue.
+     */
+    public AlertCommandQueue(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+
+        this.values = new int[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.overflowPolicy = overflowPolicy;
+
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds a value to the queue. If the queue is full, the overflow policy is applied.
+     *
+     * @param value Value to be added, must not be negative.
+     * @return True, if the value has been added.
+     */
+    public boolean add(int value) {
+        while (!offer(value)) {
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                dropCount.incrementAndGet();
+                return false;
+            }
+
+            // Make room by removing the oldest value
+            if (poll() != EMPTY) {
+                dropCount.incrementAndGet();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds a value to the queue if it is not full.
+     *
+     * @param value Value to be added, must not be negative.
+     * @return True, if the value has been added, false if the queue is full.
+     */
+    public boolean offer(int value) {
+        long pos = enqueuePos.get();
+
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+
+            if (diff == 0) {
+                // Slot is free: claim it and publish the value
+                if (enqueuePos.compareAndSet(pos, pos + 1)) {
+                    values[index] = value;
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = enqueuePos.get();
+            }
+            else if (diff < 0) {
+                // Slot still holds a value that has not been taken: queue is full
+                return false;
+            }
+            else {
+                // Another producer claimed the slot
+                pos = enqueuePos.get();
+            }
+        }
+    }
+
+    /**
+     * Takes the oldest value from the queue.
+     *
+     * @return Oldest value or EMPTY if the queue is empty.
+     */
+    public int poll() {
+        long pos = dequeuePos.get();
+
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+
+            if (diff == 0) {
+                // Slot holds a value: claim it and release the slot for producers
+                if (dequeuePos.compareAndSet(pos, pos + 1)) {
+                    int value = values[index];
+                    sequences.set(index, pos + mask + 1);
+                    return value;
+                }
+                pos = dequeuePos.get();
+            }
+            else if (diff < 0) {
+                // Slot has not been filled yet: queue is empty
+                return EMPTY;
+            }
+            else {
+                // Another consumer took the value
+                pos = dequeuePos.get();
+            }
+        }
+    }
+
+    /**
+     * Removes all values from the queue.
+     */
+    public void clear() {
+        while (poll() != EMPTY) {
+            // Discard value
+        }
+    }
+
+    /**
+     * Returns the number of queued values.
+     *
+     * @return Number of values, which may already be outdated when concurrently modified.
+     */
+    public int size() {
+        long size = enqueuePos.get() - dequeuePos.get();
+
+        return (int) Math.max(0, Math.min(size, values.length));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int getCapacity() {
+        return values.length;
+    }
+
+    /**
+     * Returns the number of values that have been dropped due to overflow.
+     *
+     * @return Number of dropped values since the queue has been created.
+     */
+    public long getDropCount() {
+        return dropCount.get();
+    }
+}
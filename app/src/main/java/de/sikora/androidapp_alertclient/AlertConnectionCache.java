@@ -0,0 +1,207 @@
+package de.sikora.androidapp_alertclient;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Keeps the connections of a device scan to detected alert devices open for a short time, so
+ * that a client started for a detected device can take over the connection instead of
+ * connecting a second time.
+ *
+ * Connections are parked by the scan after the device has provided its id and taken by
+ * AlertClientTcp or AlertClientSelector when they connect to the device. Connections that are
+ * not taken within the time to live are closed. The cache is disabled by default.
+ */
+public class AlertConnectionCache {
+
+    // Default time in ms for which a parked connection is kept open
+    private static final long TIME_TO_LIVE_DEFAULT = 5000;
+
+    // Maximum number of parked connections
+    private static final int NUM_ENTRIES_MAX = 256;
+
+    private static AlertConnectionCache instance = null;
+
+    // Parked connections by address and port, guarded by this
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    // Flag indicating whether connections are parked
+    private volatile boolean enabled = false;
+
+    // Time in ms for which a parked connection is kept open
+    private volatile long timeToLive = TIME_TO_LIVE_DEFAULT;
+
+
+    public static synchronized AlertConnectionCache getInstance() {
+        if (instance == null) {
+            instance = new AlertConnectionCache();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Private constructor that is used to create a singleton instance by the
+     * <code>getInstance</code> method.
+     */
+    private AlertConnectionCache() {
+    }
+
+    /**
+     * Enables or disables parking connections. When disabled, all parked connections are
+     * closed.
+     *
+     * @param enabled True, if the scans shall hand over their connections to the clients.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets the time for which a parked connection is kept open.
+     *
+     * @param timeToLive Time in ms.
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Parks the connection to a device. A connection parked earlier for the same device is
+     * closed.
+     *
+     * @param address Address of the device.
+     * @param port    Port of the device.
+     * @param socket  Connected socket. If it belongs to a socket channel, the channel must not be
+     *                registered with a selector anymore.
+     * @return True, if the connection has been parked. Otherwise, the caller shall close it.
+     */
+    public boolean park(String address, int port, Socket socket) {
+        if (!enabled) {
+            return false;
+        }
+
+        long curTime = System.currentTimeMillis();
+        Entry previous;
+
+        synchronized (this) {
+            removeExpired(curTime);
+
+            if (entries.size() >= NUM_ENTRIES_MAX) {
+                return false;
+            }
+
+            previous = entries.put(address + ":" + port, new Entry(socket, curTime + timeToLive));
+        }
+
+        if (previous != null) {
+            close(previous.socket);
+        }
+
+        return true;
+    }
+
+    /**
+     * Takes the parked connection to a device.
+     *
+     * @param address Address of the device.
+     * @param port    Port of the device.
+     * @return Connected socket, which is owned by the caller afterwards, or null if no
+     *         connection has been parked or it has expired.
+     */
+    public Socket take(String address, int port) {
+        if (!enabled) {
+            return null;
+        }
+
+        Entry entry;
+
+        synchronized (this) {
+            removeExpired(System.currentTimeMillis());
+
+            entry = entries.remove(address + ":" + port);
+        }
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.socket.isClosed()) {
+            return null;
+        }
+
+        return entry.socket;
+    }
+
+    /**
+     * Closes all parked connections.
+     */
+    public void clear() {
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                close(entry.socket);
+            }
+
+            entries.clear();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Closes the connections that have not been taken in time. Called with the lock held.
+     */
+    private void removeExpired(long curTime) {
+        Iterator<Entry> it = entries.values().iterator();
+
+        while (it.hasNext()) {
+            Entry entry = it.next();
+
+            if (curTime >= entry.expiryTime) {
+                close(entry.socket);
+                it.remove();
+            }
+        }
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        }
+        catch (IOException e) {
+            // Failed to close
+        }
+    }
+
+    /**
+     * Parked connection.
+     */
+    private static class Entry {
+
+        private final Socket socket;
+
+        private final long expiryTime;
+
+        Entry(Socket socket, long expiryTime) {
+            this.socket = socket;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package de.sikora.androidapp_alertclient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of objects associated with alert devices, e.g. the clients of the AlertClientPool, by
+ * device address and by device id.
+ *
+ * Lookups do not lock and take constant time. Modifications are synchronized. The lists of all
+ * devices and objects are snapshots that are created at most once per modification, so
+ * repeated reads without modification do not copy anything.
+ *
+ * @param <T> Type of the objects associated with the devices.
+ */
+public class AlertDeviceIndex<T> {
+
+    // Entries by device address
+    private final ConcurrentHashMap<String, Entry<T>> byAddress = new ConcurrentHashMap<>();
+
+    // Entries by device id, devices without id are not contained
+    private final ConcurrentHashMap<String, Entry<T>> byId = new ConcurrentHashMap<>();
+
+    // Entries in the order in which they have been added, guarded by this
+    private final Map<String, Entry<T>> entries = new LinkedHashMap<>();
+
+    // Snapshot of the devices, null if outdated
+    private volatile List<AlertDeviceModel> deviceSnapshot = null;
+
+    // Snapshot of the associated objects, null if outdated
+    private volatile List<T> valueSnapshot = null;
+
+
+    /**
+     * Adds a device and its associated object. A device with the same address is replaced.
+     *
+     * @param device Device to be added.
+     * @param value  Object associated with the device.
+     * @return Object associated with the replaced device or null.
+     */
+    public synchronized T put(AlertDeviceModel device, T value) {
+        T previous = removeByAddress(device.getAddress());
+
+        Entry<T> entry = new Entry<>(device, value);
+
+        entries.put(device.getAddress(), entry);
+        byAddress.put(device.getAddress(), entry);
+
+        if (device.getId() != null) {
+            byId.put(device.getId(), entry);
+        }
+
+        invalidateSnapshots();
+
+        return previous;
+    }
+
+    /**
+     * Removes the device with the specified address.
+     *
+     * @param address Address of the device.
+     * @return Object associated with the removed device or null.
+     */
+    public synchronized T removeByAddress(String address) {
+        Entry<T> entry = entries.remove(address);
+
+        if (entry == null) {
+            return null;
+        }
+
+        byAddress.remove(address);
+
+        if (entry.device.getId() != null) {
+            // Only remove the id if it still refers to this entry
+            byId.remove(entry.device.getId(), entry);
+        }
+
+        invalidateSnapshots();
+
+        return entry.value;
+    }
+
+    /**
+     * Removes all devices.
+     *
+     * @return Objects associated with the removed devices.
+     */
+    public synchronized List<T> clear() {
+        List<T> values = getValues();
+
+        entries.clear();
+        byAddress.clear();
+        byId.clear();
+
+        invalidateSnapshots();
+
+        return values;
+    }
+
+    /**
+     * Returns the object associated with the device with the specified address.
+     *
+     * @param address Address of the device.
+     * @return Associated object or null if no device with the address is contained.
+     */
+    public T getByAddress(String address) {
+        Entry<T> entry = byAddress.get(address);
+
+        return (entry != null) ? entry.value : null;
+    }
+
+    /**
+     * Returns the object associated with the device with the specified id.
+     *
+     * @param id Id of the device.
+     * @return Associated object or null if no device with the id is contained.
+     */
+    public T getById(String id) {
+        Entry<T> entry = byId.get(id);
+
+        return (entry != null) ? entry.value : null;
+    }
+
+    /**
+     * Returns the device with the specified address.
+     *
+     * @param address Address of the device.
+     * @return Device or null if no device with the address is contained.
+     */
+    public AlertDeviceModel getDeviceByAddress(String address) {
+        Entry<T> entry = byAddress.get(address);
+
+        return (entry != null) ? entry.device : null;
+    }
+
+    /**
+     * Returns the device with the specified id.
+     *
+     * @param id Id of the device.
+     * @return Device or null if no device with the id is contained.
+     */
+    public AlertDeviceModel getDeviceById(String id) {
+        Entry<T> entry = byId.get(id);
+
+        return (entry != null) ? entry.device : null;
+    }
+
+    /**
+     * Returns all devices in the order in which they have been added.
+     *
+     * @return Unmodifiable snapshot of the devices.
+     */
+    public List<AlertDeviceModel> getDevices() {
+        List<AlertDeviceModel> snapshot = deviceSnapshot;
+
+        if (snapshot == null) {
+            synchronized (this) {
+                List<AlertDeviceModel> devices = new ArrayList<>(entries.size());
+
+                for (Entry<T> entry : entries.values()) {
+                    devices.add(entry.device);
+                }
+
+                snapshot = Collections.unmodifiableList(devices);
+                deviceSnapshot = snapshot;
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Returns all associated objects in the order in which they have been added.
+     *
+     * @return Unmodifiable snapshot of the objects.
+     */
+    public List<T> getValues() {
+        List<T> snapshot = valueSnapshot;
+
+        if (snapshot == null) {
+            synchronized (this) {
+                List<T> values = new ArrayList<>(entries.size());
+
+                for (Entry<T> entry : entries.values()) {
+                    values.add(entry.value);
+                }
+
+                snapshot = Collections.unmodifiableList(values);
+                valueSnapshot = snapshot;
+            }
+        }
+
+        return snapshot;
+    }
+
+    public int size() {
+        return byAddress.size();
+    }
+
+    private void invalidateSnapshots() {
+        deviceSnapshot = null;
+        valueSnapshot = null;
+    }
+
+    /**
+     * Device and its associated object.
+     */
+    private static class Entry<T> {
+
+        private final AlertDeviceModel device;
+
+        private final T value;
+
+        Entry(AlertDeviceModel device, T value) {
+            this.device = device;
+            this.value = value;
+        }
+    }
+}
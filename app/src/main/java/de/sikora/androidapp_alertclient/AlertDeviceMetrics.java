@@ -0,0 +1,278 @@
+package de.sikora.androidapp_alertclient;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency and health metrics of the connection to one alert device.
+ *
+ * The metrics are recorded by the AlertClientTcp object of the device, both when it runs in
+ * its own thread and when it is driven by an AlertClientSelector. Recording does not lock.
+ */
+public class AlertDeviceMetrics {
+
+    // Address of the device
+    private final String address;
+
+    // Response times of read requests
+    private final AlertLatencyHistogram responseTimes = new AlertLatencyHistogram();
+
+    // Number of established connections
+    private final AtomicLong numConnects = new AtomicLong(0);
+
+    // Number of failed connection attempts
+    private final AtomicLong numConnectFailures = new AtomicLong(0);
+
+    // Number of closed connections
+    private final AtomicLong numDisconnects = new AtomicLong(0);
+
+    // Number of read requests that have not been answered in time
+    private final AtomicLong numMissedResponses = new AtomicLong(0);
+
+    // Number of bytes received from the device
+    private final AtomicLong bytesIn = new AtomicLong(0);
+
+    // Number of bytes sent to the device
+    private final AtomicLong bytesOut = new AtomicLong(0);
+
+    // Number of values waiting to be sent when last enqueued
+    private volatile int queueDepth = 0;
+
+    // Largest number of values waiting to be sent
+    private volatile int queueDepthMax = 0;
+
+    // Number of values dropped from the output queue
+    private volatile long queueDrops = 0;
+
+
+    public AlertDeviceMetrics(String address) {
+        this.address = address;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * Records the time between a read request and the response of the device.
+     *
+     * @param responseTime Response time in ms.
+     */
+    public void recordResponseTime(long responseTime) {
+        responseTimes.record(responseTime);
+    }
+
+    public void recordMissedResponse() {
+        numMissedResponses.incrementAndGet();
+    }
+
+    public void recordConnected() {
+        numConnects.incrementAndGet();
+    }
+
+    public void recordConnectFailed() {
+        numConnectFailures.incrementAndGet();
+    }
+
+    public void recordDisconnected() {
+        numDisconnects.incrementAndGet();
+    }
+
+    public void recordBytesIn(int numBytes) {
+        bytesIn.addAndGet(numBytes);
+    }
+
+    public void recordBytesOut(int numBytes) {
+        bytesOut.addAndGet(numBytes);
+    }
+
+    /**
+     * Records the state of the output queue after a value has been enqueued.
+     *
+     * @param depth Number of values waiting to be sent.
+     * @param drops Number of values dropped since the client has been created.
+     */
+    public void recordQueueDepth(int depth, long drops) {
+        queueDepth = depth;
+        queueDrops = drops;
+
+        if (depth > queueDepthMax) {
+            queueDepthMax = depth;
+        }
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        responseTimes.reset();
+        numConnects.set(0);
+        numConnectFailures.set(0);
+        numDisconnects.set(0);
+        numMissedResponses.set(0);
+        bytesIn.set(0);
+        bytesOut.set(0);
+        queueDepth = 0;
+        queueDepthMax = 0;
+        queueDrops = 0;
+    }
+
+    /**
+     * Returns a copy of the current metrics, which is not modified by further recording.
+     *
+     * @return Snapshot of the metrics.
+     */
+    public Snapshot getSnapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Metrics of a device at a point in time.
+     */
+    public static class Snapshot {
+
+        private final String address;
+
+        private final long numResponses;
+
+        private final double responseTimeMean;
+
+        private final long responseTimeP50;
+
+        private final long responseTimeP90;
+
+        private final long responseTimeP99;
+
+        private final long responseTimeMax;
+
+        private final long numMissedResponses;
+
+        private final long numConnects;
+
+        private final long numConnectFailures;
+
+        private final long numDisconnects;
+
+        private final long bytesIn;
+
+        private final long bytesOut;
+
+        private final int queueDepth;
+
+        private final int queueDepthMax;
+
+        private final long queueDrops;
+
+        private Snapshot(AlertDeviceMetrics metrics) {
+            AlertLatencyHistogram histogram = metrics.responseTimes;
+
+            address = metrics.address;
+            numResponses = histogram.getTotalCount();
+            responseTimeMean = histogram.getMean();
+            responseTimeP50 = histogram.getValueAtPercentile(50);
+            responseTimeP90 = histogram.getValueAtPercentile(90);
+            responseTimeP99 = histogram.getValueAtPercentile(99);
+            responseTimeMax = histogram.getMax();
+            numMissedResponses = metrics.numMissedResponses.get();
+            numConnects = metrics.numConnects.get();
+            numConnectFailures = metrics.numConnectFailures.get();
+            numDisconnects = metrics.numDisconnects.get();
+            bytesIn = metrics.bytesIn.get();
+            bytesOut = metrics.bytesOut.get();
+            queueDepth = metrics.queueDepth;
+            queueDepthMax = metrics.queueDepthMax;
+            queueDrops = metrics.queueDrops;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public long getNumResponses() {
+            return numResponses;
+        }
+
+        public double getResponseTimeMean() {
+            return responseTimeMean;
+        }
+
+        public long getResponseTimeP50() {
+            return responseTimeP50;
+        }
+
+        public long getResponseTimeP90() {
+            return responseTimeP90;
+        }
+
+        public long getResponseTimeP99() {
+            return responseTimeP99;
+        }
+
+        public long getResponseTimeMax() {
+            return responseTimeMax;
+        }
+
+        public long getNumMissedResponses() {
+            return numMissedResponses;
+        }
+
+        public long getNumConnects() {
+            return numConnects;
+        }
+
+        /**
+         * Returns the number of connections established after the first one.
+         *
+         * @return Number of reconnects.
+         */
+        public long getNumReconnects() {
+            return Math.max(0, numConnects - 1);
+        }
+
+        public long getNumConnectFailures() {
+            return numConnectFailures;
+        }
+
+        public long getNumDisconnects() {
+            return numDisconnects;
+        }
+
+        public long getBytesIn() {
+            return bytesIn;
+        }
+
+        public long getBytesOut() {
+            return bytesOut;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getQueueDepthMax() {
+            return queueDepthMax;
+        }
+
+        public long getQueueDrops() {
+            return queueDrops;
+        }
+
+        /**
+         * Returns the number of failures of the device, i.e. missed responses, failed
+         * connection attempts, and lost connections.
+         *
+         * @return Number of failures.
+         */
+        public long getNumFailures() {
+            return numMissedResponses + numConnectFailures + numDisconnects;
+        }
+
+        @Override
+        public String toString() {
+            return address + ": rtt p50=" + responseTimeP50 + " p99=" + responseTimeP99
+                    + " max=" + responseTimeMax + " ms, missed=" + numMissedResponses
+                    + ", connects=" + numConnects + ", failures=" + numConnectFailures
+                    + ", disconnects=" + numDisconnects + ", in=" + bytesIn + ", out=" + bytesOut
+                    + ", queue=" + queueDepth + "/" + queueDepthMax + ", drops=" + queueDrops;
+        }
+    }
+}
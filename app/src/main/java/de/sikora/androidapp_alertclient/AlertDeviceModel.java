@@ -1,7 +1,7 @@
 package de.sikora.androidapp_alertclient;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Representation of a remote alert device.
@@ -10,6 +10,18 @@ public class AlertDeviceModel {
 
     public static String DEVICE_NAME_DEFAULT = "Alert device";
 
+    // Bits of the state holding the alert level
+    private static final long STATE_LEVEL_MASK = 0xFFFFFFFFL;
+
+    // Bit of the state holding the connection flag
+    private static final long STATE_CONNECTED_BIT = 1L << 32;
+
+    // Position of the version number within the state
+    private static final int STATE_VERSION_SHIFT = 33;
+
+    // Bits of the state holding the version number
+    private static final long STATE_VERSION_MASK = -1L << STATE_VERSION_SHIFT;
+
     // Name of the alert device, e.g. assigned by the user
     private String deviceName = DEVICE_NAME_DEFAULT;
 
@@ -22,49 +34,153 @@ public class AlertDeviceModel {
     // Remote port of the alert service
     private int devicePort;
 
-    // Current alert level set by the user or provided by the alert device
-    private int alertLevel;
-
     // Flag that this device is managed by the device pool of the application
     private boolean registered;
 
-    // Connection state
-    private boolean connected;
+    // Current alert level (set by the user or provided by the alert device), connection state,
+    // and version number packed into one value, so that readers always get a consistent state.
+    // The version is incremented on each change of the alert level or connection state.
+    private final AtomicLong state = new AtomicLong(0);
+
+    // Listeners: snapshot that is replaced on each modification, so that notifications can
+    // iterate without locking while listeners are added or removed by other threads
+    private volatile AlertStateListener[] listeners = new AlertStateListener[0];
+
+    // Last alert level event, reused while the event source does not change
+    private volatile AlertStateEvent alertLevelEvent;
+
+    // Last connection state event, reused while the event source does not change
+    private volatile AlertStateEvent connectionStateEvent;
+
+
+    /**
+     * Returns the alert level, connection state, and version as one value. Use
+     * {@link #levelOf(long)}, {@link #isConnectedIn(long)}, and {@link #versionOf(long)} to
+     * extract the components of a consistent snapshot.
+     *
+     * @return Packed state.
+     */
+    public long getState() {
+        return state.get();
+    }
+
+    /**
+     * Returns the version of the state. The version is incremented on each change of the alert
+     * level or the connection state, so a consumer can skip updates if the version is unchanged.
+     *
+     * @return Version number.
+     */
+    public long getStateVersion() {
+        return versionOf(state.get());
+    }
+
+    public static int levelOf(long state) {
+        return (int) (state & STATE_LEVEL_MASK);
+    }
+
+    public static boolean isConnectedIn(long state) {
+        return (state & STATE_CONNECTED_BIT) != 0;
+    }
+
+    public static long versionOf(long state) {
+        return state >>> STATE_VERSION_SHIFT;
+    }
+
+    /**
+     * Atomically replaces the bits of the state selected by the mask and increments the version
+     * if the bits change.
+     *
+     * @param mask Bits to be replaced.
+     * @param bits New value of the bits.
+     * @return True, if the state has changed.
+     */
+    private boolean updateState(long mask, long bits) {
+        while (true) {
+            long current = state.get();
+
+            if ((current & mask) == bits) {
+                return false;
+            }
+
+            long version = versionOf(current) + 1;
+            long next = (current & ~mask & ~STATE_VERSION_MASK) | bits
+                    | (version << STATE_VERSION_SHIFT);
+
+            if (state.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Atomically sets the alert level if the current alert level equals the expected one.
+     *
+     * @param expectedLevel Expected current alert level.
+     * @param alertLevel    New alert level.
+     * @return True, if the current alert level equaled the expected one.
+     */
+    public boolean compareAndSetAlertLevel(int expectedLevel, int alertLevel) {
+        while (true) {
+            long current = state.get();
+
+            if (levelOf(current) != expectedLevel) {
+                return false;
+            }
 
-    // Listeners
-    private List<AlertStateListener> listenerList;
+            if (expectedLevel == alertLevel) {
+                return true;
+            }
 
+            long version = versionOf(current) + 1;
+            long next = (current & STATE_CONNECTED_BIT) | (alertLevel & STATE_LEVEL_MASK)
+                    | (version << STATE_VERSION_SHIFT);
 
-    public AlertDeviceModel() {
-        listenerList = new LinkedList<>();
+            if (state.compareAndSet(current, next)) {
+                return true;
+            }
+        }
     }
 
     public void setAlertLevel(int alertLevel) {
-        this.alertLevel = alertLevel;
+        updateState(STATE_LEVEL_MASK, alertLevel & STATE_LEVEL_MASK);
     }
 
     public void setAlertLevelAndNotify(int alertLevel, AlertStateListener source) {
-        this.alertLevel = alertLevel;
+        setAlertLevel(alertLevel);
+
+        AlertStateEvent ev = alertLevelEvent;
+
+        if (ev == null || ev.eventSource != source) {
+            ev = new AlertStateEvent(AlertEventType.ALERT_LEVEL_EVENT, source);
+            alertLevelEvent = ev;
+        }
 
-        notifyListeners( new AlertStateEvent(AlertEventType.ALERT_LEVEL_EVENT, source) );
+        notifyListeners(ev);
     }
 
     public int getAlertLevel() {
-        return alertLevel;
+        return levelOf(state.get());
     }
 
     public boolean isConnected() {
-        return connected;
+        return isConnectedIn(state.get());
     }
 
     public void setConnected(boolean connected) {
-        this.connected = connected;
+        updateState(STATE_CONNECTED_BIT, connected ? STATE_CONNECTED_BIT : 0);
     }
 
     public void setConnectedAndNotify(boolean connected, AlertStateListener source) {
-        this.connected = connected;
+        setConnected(connected);
+
+        AlertStateEvent ev = connectionStateEvent;
+
+        if (ev == null || ev.eventSource != source) {
+            ev = new AlertStateEvent(AlertEventType.CONNECTION_STATE_EVENT, source);
+            connectionStateEvent = ev;
+        }
 
-        notifyListeners( new AlertStateEvent(AlertEventType.CONNECTION_STATE_EVENT, source) );
+        notifyListeners(ev);
     }
 
     public String getName() {
@@ -107,18 +223,39 @@ public class AlertDeviceModel {
         this.registered = registered;
     }
 
-    public void addListener(AlertStateListener listener) {
-        if ( !listenerList.contains(listener) ) {
-            listenerList.add(listener);
+    public synchronized void addListener(AlertStateListener listener) {
+        AlertStateListener[] current = listeners;
+
+        for (AlertStateListener l : current) {
+            if (l == listener) {
+                return;
+            }
         }
+
+        AlertStateListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+
+        listeners = updated;
     }
 
-    public void removeListener(AlertStateListener listener) {
-        listenerList.remove(listener);
+    public synchronized void removeListener(AlertStateListener listener) {
+        AlertStateListener[] current = listeners;
+
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                AlertStateListener[] updated = new AlertStateListener[current.length - 1];
+
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+
+                listeners = updated;
+                return;
+            }
+        }
     }
 
     public void notifyListeners(AlertStateEvent ev) {
-        for (AlertStateListener listener: listenerList) {
+        for (AlertStateListener listener: listeners) {
             // Notify listeners except the event source itself
             if (listener != ev.eventSource) {
                 switch(ev.eventType) {
@@ -139,15 +276,27 @@ public class AlertDeviceModel {
         CONNECTION_STATE_EVENT
     }
 
+    /**
+     * Immutable event passed to the listeners. Events are reused for notifications with the same
+     * type and source.
+     */
     public static class AlertStateEvent {
 
-        private AlertEventType eventType;
-        private AlertStateListener eventSource;
+        private final AlertEventType eventType;
+        private final AlertStateListener eventSource;
 
         public AlertStateEvent(AlertEventType type, AlertStateListener source) {
             this.eventType = type;
             this.eventSource = source;
         }
+
+        public AlertEventType getEventType() {
+            return eventType;
+        }
+
+        public AlertStateListener getEventSource() {
+            return eventSource;
+        }
     }
 
     /**
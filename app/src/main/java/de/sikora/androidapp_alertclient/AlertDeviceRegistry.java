@@ -0,0 +1,252 @@
+package de.sikora.androidapp_alertclient;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persists the alert devices registered in the AlertClientPool, so that they are available
+ * immediately after the app has been started without scanning the network.
+ *
+ * The registry file is a compact binary log. Each registration or removal appends one record.
+ * When the file is loaded the records are replayed, and the file is rewritten with one record
+ * per device if it contains too many outdated records.
+ */
+public class AlertDeviceRegistry {
+
+    // Tag for log messages generated by this class
+    private static final String TAG = AlertDeviceRegistry.class.getSimpleName();
+
+    // Value at the start of the file identifying the file format
+    private static final int FILE_MAGIC = 0x414C5254;
+
+    // Version of the file format
+    private static final int FILE_VERSION = 1;
+
+    // Record type: a device has been added or updated
+    private static final byte RECORD_ADD = 1;
+
+    // Record type: a device has been removed
+    private static final byte RECORD_REMOVE = 2;
+
+    // Number of outdated records above which the file is compacted when it is loaded
+    private static final int NUM_OUTDATED_RECORDS_MAX = 64;
+
+    // File in which the devices are stored
+    private final File registryFile;
+
+
+    /**
+     * Creates a registry that is stored in the specified file. The file is created when the
+     * first device is added.
+     *
+     * @param registryFile File in which the devices are stored.
+     */
+    public AlertDeviceRegistry(File registryFile) {
+        this.registryFile = registryFile;
+    }
+
+    /**
+     * Reads the registered devices from the file.
+     *
+     * @return Registered devices in the order of their registration.
+     */
+    public synchronized List<AlertDeviceModel> load() {
+        // Registered devices by address
+        Map<String, AlertDeviceModel> devices = new LinkedHashMap<>();
+
+        int numRecords = 0;
+        boolean fileValid = true;
+
+        if (registryFile.exists()) {
+            DataInputStream in = null;
+
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(registryFile)));
+
+                if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                    throw new IOException("Unknown file format.");
+                }
+
+                while (true) {
+                    byte recordType;
+
+                    try {
+                        recordType = in.readByte();
+                    }
+                    catch (EOFException e) {
+                        // End of file
+                        break;
+                    }
+
+                    String address = in.readUTF();
+
+                    if (recordType == RECORD_ADD) {
+                        AlertDeviceModel device = new AlertDeviceModel();
+                        device.setAddress(address);
+                        device.setPort(in.readInt());
+
+                        String id = in.readUTF();
+                        device.setId(id.isEmpty() ? null : id);
+                        device.setName(in.readUTF());
+
+                        // Keep the position of a device that is updated
+                        devices.put(address, device);
+                    }
+                    else if (recordType == RECORD_REMOVE) {
+                        devices.remove(address);
+                    }
+                    else {
+                        throw new IOException("Unknown record type: " + recordType);
+                    }
+
+                    numRecords += 1;
+                }
+            }
+            catch (IOException e) {
+                // Keep the devices read so far, e.g. if the last record has been truncated
+                Log.w(TAG, "Failed reading device registry.", e);
+                fileValid = false;
+            }
+            finally {
+                close(in);
+            }
+        }
+
+        List<AlertDeviceModel> deviceList = new ArrayList<>(devices.values());
+
+        // Rewrite the file if it is corrupt or contains too many outdated records
+        if (!fileValid || numRecords - deviceList.size() > NUM_OUTDATED_RECORDS_MAX) {
+            rewrite(deviceList);
+        }
+
+        Log.i(TAG, "Loaded " + deviceList.size() + " devices from registry.");
+
+        return deviceList;
+    }
+
+    /**
+     * Stores a device that has been added to the pool. A device with the same address is
+     * replaced.
+     *
+     * @param device Device to be stored.
+     */
+    public synchronized void recordAdded(AlertDeviceModel device) {
+        DataOutputStream out = null;
+
+        try {
+            out = openForAppend();
+            writeAddRecord(out, device);
+            out.flush();
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Failed storing device " + device.getAddress() + ".", e);
+        }
+        finally {
+            close(out);
+        }
+    }
+
+    /**
+     * Removes the device with the specified address from the registry.
+     *
+     * @param address Address of the device to be removed.
+     */
+    public synchronized void recordRemoved(String address) {
+        DataOutputStream out = null;
+
+        try {
+            out = openForAppend();
+            out.writeByte(RECORD_REMOVE);
+            out.writeUTF(address);
+            out.flush();
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Failed removing device " + address + ".", e);
+        }
+        finally {
+            close(out);
+        }
+    }
+
+    /**
+     * Replaces the content of the file by one record per device.
+     *
+     * @param deviceList Devices to be stored.
+     */
+    private void rewrite(List<AlertDeviceModel> deviceList) {
+        File tmpFile = new File(registryFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+
+            for (AlertDeviceModel device : deviceList) {
+                writeAddRecord(out, device);
+            }
+
+            out.close();
+            out = null;
+
+            if (!tmpFile.renameTo(registryFile)) {
+                throw new IOException("Failed replacing " + registryFile);
+            }
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Failed compacting device registry.", e);
+        }
+        finally {
+            close(out);
+        }
+    }
+
+    private DataOutputStream openForAppend() throws IOException {
+        boolean newFile = !registryFile.exists() || registryFile.length() == 0;
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(registryFile, true)));
+
+        if (newFile) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+        }
+
+        return out;
+    }
+
+    private static void writeAddRecord(DataOutputStream out, AlertDeviceModel device)
+            throws IOException {
+        out.writeByte(RECORD_ADD);
+        out.writeUTF(device.getAddress());
+        out.writeInt(device.getPort());
+        out.writeUTF(device.getId() != null ? device.getId() : "");
+        out.writeUTF(device.getName() != null ? device.getName() : "");
+    }
+
+    private static void close(Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            }
+            catch (IOException e) {
+                // Failed to close
+            }
+        }
+    }
+}
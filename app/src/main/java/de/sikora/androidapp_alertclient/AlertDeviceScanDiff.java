@@ -0,0 +1,186 @@
+package de.sikora.androidapp_alertclient;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compares the devices detected by a scan with the devices known before the scan and reports
+ * only the differences to a {@link DiffListener}.
+ *
+ * A detected device is reported as added if neither its address nor its id is known, and as
+ * changed if its address is known with another id or its id is known at another address. Known
+ * devices that have not been detected are reported as removed when the scan has finished.
+ * Devices that are detected unchanged are not reported.
+ */
+public class AlertDeviceScanDiff implements AlertDeviceScanTcp.AlertDeviceScanListener {
+
+    // Devices known before the scan by address
+    private final Map<String, AlertDeviceModel> knownByAddr = new LinkedHashMap<>();
+
+    // Devices known before the scan by id
+    private final Map<String, AlertDeviceModel> knownById = new HashMap<>();
+
+    // Devices detected by the scan by address
+    private final Map<String, AlertDeviceModel> foundByAddr = new LinkedHashMap<>();
+
+    // Ids of known devices that have been detected at another address
+    private final Set<String> movedIds = new HashSet<>();
+
+    // Listener that is informed about the differences
+    private final DiffListener listener;
+
+    // Flag if the scan has been aborted, in which case no devices are reported as removed
+    private volatile boolean aborted = false;
+
+
+    /**
+     * Creates a new comparison for one scan.
+     *
+     * @param knownDevices Devices known before the scan.
+     * @param listener     Listener that is informed about the differences.
+     */
+    public AlertDeviceScanDiff(Collection<AlertDeviceModel> knownDevices, DiffListener listener) {
+        for (AlertDeviceModel device : knownDevices) {
+            knownByAddr.put(device.getAddress(), device);
+
+            if (device.getId() != null) {
+                knownById.put(device.getId(), device);
+            }
+        }
+
+        this.listener = listener;
+    }
+
+    /**
+     * Marks the scan as aborted. Known devices that have not been detected so far are then not
+     * reported as removed.
+     */
+    public void abort() {
+        aborted = true;
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * Returns the devices that are known after the scan, i.e. the detected devices and, if the
+     * scan has been aborted, the known devices that have not been checked.
+     *
+     * @return List of devices.
+     */
+    public synchronized List<AlertDeviceModel> getCurrentDevices() {
+        Map<String, AlertDeviceModel> current = new LinkedHashMap<>();
+
+        if (aborted) {
+            current.putAll(knownByAddr);
+        }
+
+        current.putAll(foundByAddr);
+
+        return new ArrayList<>(current.values());
+    }
+
+    @Override
+    public void onDeviceFound(AlertDeviceModel device) {
+        AlertDeviceModel previous;
+        boolean changed;
+
+        synchronized (this) {
+            foundByAddr.put(device.getAddress(), device);
+
+            previous = knownByAddr.get(device.getAddress());
+
+            if (previous != null) {
+                // Known address: changed if the device provides another id
+                changed = !equalIds(previous.getId(), device.getId());
+            }
+            else {
+                // Unknown address: changed if a known device has moved to this address
+                previous = (device.getId() != null) ? knownById.get(device.getId()) : null;
+                changed = (previous != null);
+
+                if (changed) {
+                    movedIds.add(device.getId());
+                }
+            }
+        }
+
+        if (previous == null) {
+            listener.onDeviceAdded(device);
+        }
+        else if (changed) {
+            listener.onDeviceChanged(previous, device);
+        }
+    }
+
+    @Override
+    public void onScanFinished() {
+        if (!aborted) {
+            List<AlertDeviceModel> removedDevices = new ArrayList<>();
+
+            synchronized (this) {
+                for (AlertDeviceModel device : knownByAddr.values()) {
+                    boolean found = foundByAddr.containsKey(device.getAddress());
+                    boolean moved = (device.getId() != null) && movedIds.contains(device.getId());
+
+                    if (!found && !moved) {
+                        removedDevices.add(device);
+                    }
+                }
+            }
+
+            for (AlertDeviceModel device : removedDevices) {
+                listener.onDeviceRemoved(device);
+            }
+        }
+
+        listener.onScanFinished();
+    }
+
+    private static boolean equalIds(String id1, String id2) {
+        return (id1 == null) ? (id2 == null) : id1.equals(id2);
+    }
+
+    /**
+     * Interface that must be implemented by objects listening to the differences found by an
+     * incremental scan.
+     */
+    public interface DiffListener {
+
+        /**
+         * This method is called when a device has been detected that was not known before.
+         *
+         * @param device Detected device.
+         */
+        void onDeviceAdded(AlertDeviceModel device);
+
+        /**
+         * This method is called when the scan has finished and a known device has not been
+         * detected.
+         *
+         * @param device Known device that has not been detected.
+         */
+        void onDeviceRemoved(AlertDeviceModel device);
+
+        /**
+         * This method is called when a known device has been detected with another id at its
+         * address or with its id at another address.
+         *
+         * @param previous Known device.
+         * @param current  Detected device.
+         */
+        void onDeviceChanged(AlertDeviceModel previous, AlertDeviceModel current);
+
+        /**
+         * This method is called when the scan process has finished.
+         */
+        void onScanFinished();
+    }
+}
@@ -5,15 +5,28 @@ import android.util.Log;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.ConnectException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AlertDeviceScanTcp implements Runnable {
 
@@ -23,30 +36,84 @@ public class AlertDeviceScanTcp implements Runnable {
     // Connection timeout in ms
     private static final int TIME_CONNECT_MAX = 200;
 
-    // Address of the local network that shall be scanned
-    private String networkAdrStr;
+    // Time within which a device must provide its id after the connection is established
+    private static final int TIME_ID_RESPONSE_MAX = 1000;
 
-    // Address of the first node that shall be scanned
-    private int nodeAdrFirst;
+    // Default number of addresses that are probed concurrently
+    public static final int PARALLELISM_DEFAULT = 32;
 
-    // Address of the last node that shall be scanned
-    private int nodeAdrLast;
+    // Default maximum number of probes in flight during a non-blocking sweep
+    public static final int SWEEP_PROBES_MAX = 256;
+
+    /**
+     * Determines how the addresses are probed.
+     */
+    public enum ScanMode {
+        // Blocking sockets, probed by 'parallelism' tasks of the executor
+        BLOCKING,
+
+        // Non-blocking channels, all probed by the scan thread using a selector
+        NON_BLOCKING
+    }
+
+    // Addresses that shall be scanned
+    private final AlertAddressRange addressRange;
 
     // Port number of the remote port
     private int alertRemotePort;
 
+    // Number of addresses that are probed concurrently
+    private int parallelism = PARALLELISM_DEFAULT;
+
+    // Mode in which the addresses are probed
+    private ScanMode scanMode = ScanMode.NON_BLOCKING;
+
+    // Maximum number of probes in flight during a non-blocking sweep
+    private int sweepProbesMax = SWEEP_PROBES_MAX;
+
+    // Selector of the running non-blocking sweep
+    private volatile Selector sweepSelector = null;
+
+    // Position of the next address of the range to be probed by the workers
+    private final AtomicLong adrIndexNext = new AtomicLong();
+
+    // Addresses that are probed before the address range, e.g. of previously detected devices
+    private String[] priorityAddresses = new String[0];
+
+    // Priority addresses for fast lookup, skipped when the address range is probed
+    private Set<String> priorityAddressSet = new HashSet<>();
+
+    // Addresses known not to be alert devices, skipped when the range is probed, may be null
+    private volatile AlertScanCache scanCache = null;
+
+    // Next priority address to be probed
+    private final AtomicInteger priorityAdrNext = new AtomicInteger();
+
+    // Number of workers of the current scan that have not finished, including the scan task
+    private final AtomicInteger numWorkersActive = new AtomicInteger();
+
+    // Start time of the current scan
+    private volatile long scanStartTime;
+
     // Flag that is used to stop the run() method
-    private boolean runScan;
+    private volatile boolean runScan;
 
-    // Flag that is used to prevent multiple threads to execute the run method concurrently
-    private final AtomicBoolean busy = new AtomicBoolean(false);
+    // Flag indicating that the scan has been handed to the executor and has not finished yet,
+    // so that at most one thread runs this scan
+    private final AtomicBoolean scanStarted = new AtomicBoolean(false);
 
-    // Thread in which the run() method of the AlertClientTcp object is executed
-    private Thread scanThread = null;
+    // Executor running the current scan and its workers
+    private volatile AlertExecutor scanExecutor = null;
 
     // Listeners
     private List<AlertDeviceScanListener> listenerList;
 
+    // Metrics of the scans
+    private final AlertMetrics metrics = AlertMetrics.getInstance();
+
+    // Connections to detected devices that are handed over to their clients
+    private final AlertConnectionCache connectionCache = AlertConnectionCache.getInstance();
+
     /**
      * Creates a new runnable that scans a range of network addresses in order to detect alert
      * service nodes.
@@ -55,21 +122,36 @@ public class AlertDeviceScanTcp implements Runnable {
      * @param nodeAdrFirst First node address to be scanned. The node address is appended to the
      *                     network address.
      * @param nodeAdrLast Last node address to be scanned. The node address is appended to the
-     *      *             network address.
+     *                    network address.
      * @param alertRemotePort Remote port at which the alert service is offered by
      *                        the alert devices.
      */
     public AlertDeviceScanTcp(String networkAdrStr,
                               int nodeAdrFirst, int nodeAdrLast,
                               int alertRemotePort) {
-        this.networkAdrStr = networkAdrStr;
-        this.nodeAdrFirst = nodeAdrFirst;
-        this.nodeAdrLast = nodeAdrLast;
+        this(AlertAddressRange.fromNodes(networkAdrStr, nodeAdrFirst, nodeAdrLast),
+                alertRemotePort);
+    }
+
+    /**
+     * Creates a new runnable that scans a range of network addresses of any size in order to
+     * detect alert service nodes.
+     *
+     * @param addressRange    Addresses to be scanned.
+     * @param alertRemotePort Remote port at which the alert service is offered by
+     *                        the alert devices.
+     */
+    public AlertDeviceScanTcp(AlertAddressRange addressRange, int alertRemotePort) {
+        this.addressRange = addressRange;
         this.alertRemotePort = alertRemotePort;
 
         listenerList = new LinkedList<>();
     }
 
+    public AlertAddressRange getAddressRange() {
+        return addressRange;
+    }
+
     /**
      * Returns the state of the scan process.
      *
@@ -79,18 +161,550 @@ public class AlertDeviceScanTcp implements Runnable {
         return runScan;
     }
 
+    /**
+     * Sets the number of addresses that are probed concurrently. A value of 1 scans the
+     * addresses one after another. Takes effect with the next scan.
+     *
+     * @param parallelism Number of concurrent probes.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets addresses that are probed first, before the address range is probed. Addresses in the
+     * range that are contained in the list are not probed a second time. Takes effect with the
+     * next scan.
+     *
+     * @param addresses Addresses to be probed first, e.g. of previously detected devices.
+     */
+    public void setPriorityAddresses(Collection<String> addresses) {
+        priorityAddresses = addresses.toArray(new String[0]);
+        priorityAddressSet = new HashSet<>(addresses);
+    }
+
+    /**
+     * Sets the cache in which addresses without alert device are recorded. Addresses of the
+     * range that are in the cache are not probed, priority addresses are always probed.
+     *
+     * @param scanCache Cache shared by the scans, or null to probe all addresses.
+     */
+    public void setScanCache(AlertScanCache scanCache) {
+        this.scanCache = scanCache;
+    }
+
+    public AlertScanCache getScanCache() {
+        return scanCache;
+    }
+
+    /**
+     * Sets the mode in which the addresses are probed. Takes effect with the next scan.
+     *
+     * @param scanMode BLOCKING to probe with 'parallelism' executor tasks using blocking sockets,
+     *                 NON_BLOCKING to probe all addresses from the scan thread.
+     */
+    public void setScanMode(ScanMode scanMode) {
+        this.scanMode = scanMode;
+    }
+
+    public ScanMode getScanMode() {
+        return scanMode;
+    }
+
+    /**
+     * Sets the maximum number of connections that a non-blocking sweep opens at once. Scans
+     * running concurrently should share a budget, since each connection uses a file descriptor.
+     * Takes effect with the next scan.
+     *
+     * @param sweepProbesMax Maximum number of probes in flight.
+     */
+    public void setSweepProbesMax(int sweepProbesMax) {
+        this.sweepProbesMax = Math.max(1, sweepProbesMax);
+    }
+
+    public int getSweepProbesMax() {
+        return sweepProbesMax;
+    }
+
+    /**
+     * Starts the scan in a thread of the specified executor. The scan is running from now on,
+     * also while it waits for a free thread.
+     *
+     * @param executor Executor that runs the scan.
+     * @return True, if the scan has been handed to the executor, false if the scan is queued or
+     * running already or the executor has been shut down.
+     */
+    public boolean start(AlertExecutor executor) {
+        if (!scanStarted.compareAndSet(false, true)) {
+            return false;
+        }
+
+        runScan = true;
+        scanExecutor = executor;
+
+        if (!executor.execute(this)) {
+            runScan = false;
+            scanStarted.set(false);
+
+            return false;
+        }
+
+        return true;
+    }
+
     /**
      * Stops the running scan process.
      */
     public void stopScan() {
 
-        // Tell the run method to stop
+        // Tell the run method and the workers to stop. No thread is interrupted: the workers
+        // finish after their current probe, and an interrupt could hit a later task of the same
+        // pooled thread.
         runScan = false;
 
-        // Interrupt the thread in case it is sleeping
-        if (scanThread != null) {
-            scanThread.interrupt();
+        // Wake up the sweep in case it is waiting for network events
+        Selector selector = sweepSelector;
+
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Takes the next address to be probed.
+     *
+     * @return Address string or null if all addresses have been taken.
+     */
+    private String takeNextAddress() {
+        // Take the priority addresses first
+        int priorityIndex = priorityAdrNext.getAndIncrement();
+
+        if (priorityIndex < priorityAddresses.length) {
+            return priorityAddresses[priorityIndex];
+        }
+
+        // Then the addresses of the range that have not been probed yet
+        while (true) {
+            long adrIndex = adrIndexNext.getAndIncrement();
+
+            if (adrIndex >= addressRange.size()) {
+                return null;
+            }
+
+            AlertScanCache cache = scanCache;
+
+            if (cache != null && cache.isSkipped(addressRange.getFirst() + adrIndex,
+                    System.currentTimeMillis())) {
+                metrics.recordProbeSkipped();
+                continue;
+            }
+
+            String scanAdrStr = addressRange.getAddress(adrIndex);
+
+            if (!priorityAddressSet.contains(scanAdrStr)) {
+                return scanAdrStr;
+            }
+        }
+    }
+
+    /**
+     * Records in the scan cache that no alert device has been found at an address.
+     *
+     * @param deviceAddrStr Probed address.
+     * @param result        Probe result.
+     */
+    private void recordNoDevice(String deviceAddrStr, AlertScanCache.Result result) {
+        AlertScanCache cache = scanCache;
+
+        if (cache != null) {
+            cache.put(AlertAddressRange.parseAddress(deviceAddrStr), result,
+                    System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Records in the scan cache that a connection to an address has failed.
+     *
+     * @param deviceAddrStr Probed address.
+     * @param e             Exception thrown while connecting.
+     */
+    private void recordConnectFailure(String deviceAddrStr, IOException e) {
+        if (e instanceof ConnectException) {
+            recordNoDevice(deviceAddrStr, AlertScanCache.Result.REFUSED);
+        }
+        else if (e instanceof NoRouteToHostException || e instanceof SocketTimeoutException) {
+            recordNoDevice(deviceAddrStr, AlertScanCache.Result.TIMEOUT);
+        }
+    }
+
+    /**
+     * Notifies the listeners about a detected device, one device at a time.
+     *
+     * @param device Detected device.
+     */
+    private void notifyDeviceFound(AlertDeviceModel device) {
+        if (AlertLog.isLoggable(Log.INFO)) {
+            AlertLog.i(TAG, "Found alert node at address " + device.getAddress());
+        }
+
+        // Forget earlier failures, e.g. of a device that has been switched off
+        AlertScanCache cache = scanCache;
+
+        if (cache != null) {
+            cache.remove(AlertAddressRange.parseAddress(device.getAddress()));
+        }
+
+        synchronized (listenerList) {
+            for (AlertDeviceScanListener listener:listenerList) {
+                listener.onDeviceFound(device);
+            }
+        }
+    }
+
+    /**
+     * Probes node addresses until all addresses have been taken or the scan has been stopped.
+     * Executed by each worker of a scan.
+     */
+    private void scanNextAddresses() {
+        String scanAdrStr;
+
+        while (runScan && (scanAdrStr = takeNextAddress()) != null) {
+            AlertDeviceModel device = scanAddress(scanAdrStr, alertRemotePort);
+
+            if (device != null) {
+                notifyDeviceFound(device);
+            }
+        }
+    }
+
+    /**
+     * Probes all addresses from the scan thread using non-blocking channels. Up to
+     * 'sweepProbesMax' connections are opened at once. The id is requested as soon as a
+     * connection is established and decoded as soon as all of its bytes have arrived.
+     *
+     * @throws IOException If the selector cannot be opened.
+     */
+    private void sweepAddresses() throws IOException {
+        Selector selector = Selector.open();
+        sweepSelector = selector;
+
+        List<Probe> probes = new ArrayList<>();
+
+        try {
+            boolean addressesLeft = true;
+
+            while (runScan && (addressesLeft || !probes.isEmpty())) {
+                long curTime = System.currentTimeMillis();
+
+                // Open connections to further addresses up to the limit
+                while (addressesLeft && probes.size() < sweepProbesMax) {
+                    String scanAdrStr = takeNextAddress();
+
+                    if (scanAdrStr == null) {
+                        addressesLeft = false;
+                    }
+                    else {
+                        Probe probe = openProbe(selector, scanAdrStr, curTime);
+
+                        if (probe != null) {
+                            probes.add(probe);
+                        }
+                    }
+                }
+
+                // Wait for network events or until the next probe expires
+                long nextDeadline = Long.MAX_VALUE;
+
+                for (Probe probe : probes) {
+                    nextDeadline = Math.min(nextDeadline, probe.deadline);
+                }
+
+                if (nextDeadline == Long.MAX_VALUE) {
+                    selector.selectNow();
+                }
+                else {
+                    selector.select(Math.max(1, nextDeadline - curTime));
+                }
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    Probe probe = (Probe) key.attachment();
+
+                    if (key.isValid() && key.isConnectable()) {
+                        finishProbeConnect(probe);
+                    }
+
+                    if (key.isValid() && key.isReadable()) {
+                        readProbeId(probe);
+                    }
+                }
+
+                // Deregister the cancelled connections of detected devices from the selector,
+                // so that they can be handed over to the clients
+                boolean handOff = false;
+
+                for (Probe probe : probes) {
+                    handOff |= (probe.device != null && probe.key == null);
+                }
+
+                if (handOff) {
+                    selector.selectNow();
+                }
+
+                // Report detected devices, close finished and expired probes
+                curTime = System.currentTimeMillis();
+
+                Iterator<Probe> probeIt = probes.iterator();
+
+                while (probeIt.hasNext()) {
+                    Probe probe = probeIt.next();
+
+                    if (probe.device != null) {
+                        if (probe.key == null && connectionCache.park(probe.deviceAddrStr,
+                                alertRemotePort, probe.channel.socket())) {
+                            probe.channel = null;
+                        }
+
+                        notifyDeviceFound(probe.device);
+                        probe.device = null;
+                    }
+
+                    if (!probe.done && curTime >= probe.deadline) {
+                        if (AlertLog.isLoggable(Log.DEBUG)) {
+                            AlertLog.d(TAG, "Timeout while probing device " + probe.deviceAddrStr
+                                    + " at port " + alertRemotePort);
+                        }
+                        metrics.recordProbeTimeout();
+                        probe.done = true;
+
+                        // A probe that has sent the id request is connected to another host
+                        recordNoDevice(probe.deviceAddrStr, (probe.idRequestTime == 0)
+                                ? AlertScanCache.Result.TIMEOUT : AlertScanCache.Result.NO_ID);
+                    }
+
+                    if (probe.done) {
+                        closeProbe(probe);
+                        probeIt.remove();
+                    }
+                }
+            }
+        }
+        finally {
+            for (Probe probe : probes) {
+                closeProbe(probe);
+            }
+
+            sweepSelector = null;
+            selector.close();
+        }
+    }
+
+    /**
+     * Starts a non-blocking connection to the specified address.
+     *
+     * @return Probe for the address or null if the connection could not be started.
+     */
+    private Probe openProbe(Selector selector, String deviceAddrStr, long curTime) {
+        Probe probe = new Probe(deviceAddrStr);
+
+        metrics.recordProbe();
+
+        try {
+            if (AlertLog.isLoggable(Log.DEBUG)) {
+                AlertLog.d(TAG, "Testing for alert device at " + deviceAddrStr
+                        + ":" + alertRemotePort);
+            }
+
+            probe.channel = SocketChannel.open();
+            probe.channel.configureBlocking(false);
+
+            InetSocketAddress socketAddr = new InetSocketAddress(deviceAddrStr, alertRemotePort);
+
+            if (socketAddr.isUnresolved()) {
+                throw new UnknownHostException(deviceAddrStr);
+            }
+
+            probe.deadline = curTime + TIME_CONNECT_MAX;
+
+            if (probe.channel.connect(socketAddr)) {
+                probe.key = probe.channel.register(selector, 0, probe);
+                requestProbeId(probe);
+            }
+            else {
+                probe.key = probe.channel.register(selector, SelectionKey.OP_CONNECT, probe);
+            }
+
+            return probe;
+        }
+        catch (UnknownHostException e) {
+            if (AlertLog.isLoggable(Log.DEBUG)) {
+                AlertLog.d(TAG, "Could not find a device at " + deviceAddrStr
+                        + ":" + alertRemotePort);
+            }
+        }
+        catch (IOException e) {
+            if (AlertLog.isLoggable(Log.DEBUG)) {
+                AlertLog.d(TAG, "IOException while connecting to device " + deviceAddrStr
+                        + " at port " + alertRemotePort);
+            }
+            recordConnectFailure(deviceAddrStr, e);
+        }
+
+        metrics.recordProbeError();
+        closeProbe(probe);
+        return null;
+    }
+
+    private void finishProbeConnect(Probe probe) {
+        try {
+            if (probe.channel.finishConnect()) {
+                requestProbeId(probe);
+            }
+        }
+        catch (IOException e) {
+            if (AlertLog.isLoggable(Log.DEBUG)) {
+                AlertLog.d(TAG, "IOException while connecting to device " + probe.deviceAddrStr
+                        + " at port " + alertRemotePort);
+            }
+            metrics.recordProbeError();
+            recordConnectFailure(probe.deviceAddrStr, e);
+            probe.done = true;
+        }
+    }
+
+    /**
+     * Sends the id request over a connected probe and waits for the response.
+     */
+    private void requestProbeId(Probe probe) throws IOException {
+        if (AlertLog.isLoggable(Log.DEBUG)) {
+            AlertLog.d(TAG, "Successfully connected to device: " + probe.deviceAddrStr);
+        }
+
+        ByteBuffer request = ByteBuffer.allocate(1);
+        request.put(0, (byte) AlertClientTcp.CMD_ID_REQUEST);
+
+        probe.channel.write(request);
+
+        if (request.hasRemaining()) {
+            throw new IOException("Failed sending id request.");
+        }
+
+        probe.key.interestOps(SelectionKey.OP_READ);
+        probe.idRequestTime = System.currentTimeMillis();
+        probe.deadline = probe.idRequestTime + TIME_ID_RESPONSE_MAX;
+    }
+
+    private void readProbeId(Probe probe) {
+        try {
+            int numRead = probe.channel.read(probe.idBuffer);
+
+            if (numRead < 0) {
+                AlertLog.d(TAG, "Device failed to provide id.");
+                metrics.recordProbeError();
+                recordNoDevice(probe.deviceAddrStr, AlertScanCache.Result.NO_ID);
+                probe.done = true;
+            }
+            else if (!probe.idBuffer.hasRemaining()) {
+                String idStr = AlertProtocol.decodeDeviceId(probe.idBuffer.array(), 0);
+
+                if (AlertLog.isLoggable(Log.DEBUG)) {
+                    AlertLog.d(TAG, "Device id: " + idStr);
+                }
+
+                metrics.recordDeviceFound(System.currentTimeMillis() - probe.idRequestTime);
+                probe.done = true;
+
+                // Create an alert device object with the detected address, the port, and the id.
+                // The listeners are notified after the selected keys have been processed.
+                probe.device = new AlertDeviceModel();
+                probe.device.setAddress(probe.deviceAddrStr);
+                probe.device.setPort(alertRemotePort);
+                probe.device.setId(idStr);
+
+                // Keep the connection for the client of the device
+                if (connectionCache.isEnabled()) {
+                    probe.key.cancel();
+                    probe.key = null;
+                }
+            }
+        }
+        catch (IOException e) {
+            if (AlertLog.isLoggable(Log.DEBUG)) {
+                AlertLog.d(TAG, "IOException while reading id of device " + probe.deviceAddrStr);
+            }
+            metrics.recordProbeError();
+            probe.done = true;
+        }
+    }
+
+    private void closeProbe(Probe probe) {
+        if (probe.key != null) {
+            probe.key.cancel();
+            probe.key = null;
+        }
+
+        if (probe.channel != null) {
+            try {
+                probe.channel.close();
+            }
+            catch (IOException e) {
+                // Failed to close
+            }
+            probe.channel = null;
+        }
+    }
+
+    /**
+     * Reads from the input stream until the buffer is full or the deadline has passed. Returns
+     * as soon as all bytes have arrived, even if they arrive in several segments.
+     *
+     * @param socket  Socket of the input stream, used to limit the blocking time of each read.
+     * @param in      Input stream to read from.
+     * @param buffer  Buffer to be filled.
+     * @param timeout Maximum time in ms for receiving all bytes.
+     * @return Number of bytes read, less than the buffer length if the deadline has passed or
+     *         the stream has ended.
+     * @throws IOException If reading fails.
+     */
+    private static int readFully(Socket socket, InputStream in, byte[] buffer, int timeout)
+            throws IOException {
+        long deadline = System.currentTimeMillis() + timeout;
+        int numRead = 0;
+
+        while (numRead < buffer.length) {
+            long timeLeft = deadline - System.currentTimeMillis();
+
+            if (timeLeft <= 0) {
+                break;
+            }
+
+            socket.setSoTimeout((int) timeLeft);
+
+            int n;
+
+            try {
+                n = in.read(buffer, numRead, buffer.length - numRead);
+            }
+            catch (SocketTimeoutException e) {
+                break;
+            }
+
+            if (n < 0) {
+                break;
+            }
+
+            numRead += n;
         }
+
+        return numRead;
     }
 
     /**
@@ -101,7 +715,7 @@ public class AlertDeviceScanTcp implements Runnable {
     private AlertDeviceModel scanAddress(String deviceAddrStr, int devicePort) {
 
         // Client socket for communicating with the alert device
-        Socket testSocket;
+        Socket testSocket = null;
 
         // Output stream to alert device
         OutputStream testOut;
@@ -114,8 +728,12 @@ public class AlertDeviceScanTcp implements Runnable {
         // Object to be returned
         AlertDeviceModel device = null;
 
+        metrics.recordProbe();
+
         try {
-            Log.i(TAG, "Testing for alert device at " + deviceAddrStr + ":" + devicePort);
+            if (AlertLog.isLoggable(Log.DEBUG)) {
+                AlertLog.d(TAG, "Testing for alert device at " + deviceAddrStr + ":" + devicePort);
+            }
 
             // Create InetAddress to connect to
             deviceAddr = InetAddress.getByName(deviceAddrStr);
@@ -127,8 +745,10 @@ public class AlertDeviceScanTcp implements Runnable {
 
             testSocket.connect(socketAddr, TIME_CONNECT_MAX);
 
-            Log.i( TAG, "Successfully connected to device: "
-                    + testSocket.getRemoteSocketAddress() );
+            if (AlertLog.isLoggable(Log.DEBUG)) {
+                AlertLog.d(TAG, "Successfully connected to device: "
+                        + testSocket.getRemoteSocketAddress());
+            }
 
             // Get input stream from server
             testIn = testSocket.getInputStream();
@@ -137,63 +757,75 @@ public class AlertDeviceScanTcp implements Runnable {
             testOut = testSocket.getOutputStream();
 
             // Request device id
+            long idRequestTime = System.currentTimeMillis();
+
             testOut.write(AlertClientTcp.CMD_ID_REQUEST);
             testOut.flush();
 
-            try {
-                Thread.currentThread().sleep(500);
-            }
-            catch (InterruptedException e) {
-
-            }
-
-            // Number of input values in input buffer
-            int numRxAvailable = testIn.available();
-
-            // Read response from device
-            if (numRxAvailable == AlertClientTcp.ID_NUM_BYTES) {
+            // Read the response until all id bytes have arrived or the deadline has passed
+            byte[] idBytes = new byte[AlertClientTcp.ID_NUM_BYTES];
 
-                byte[] idBytes = new byte[AlertClientTcp.ID_NUM_BYTES];
+            int numRxRead = readFully(testSocket, testIn, idBytes, TIME_ID_RESPONSE_MAX);
 
-                int numRxRead = testIn.read(idBytes, 0, AlertClientTcp.ID_NUM_BYTES);
+            if (numRxRead == AlertClientTcp.ID_NUM_BYTES) {
 
-                if (numRxRead != AlertClientTcp.ID_NUM_BYTES) {
-                    throw new IOException("Failed reading device id.");
-                }
-
-                long idLong = 0;
+                String idStr = AlertProtocol.decodeDeviceId(idBytes, 0);
 
-                for (int i = 0; i < AlertClientTcp.ID_NUM_BYTES; i++) {
-                    int val = ((int) idBytes[i]) & 0xFF;
-                    idLong = (idLong << 8) + val;
+                if (AlertLog.isLoggable(Log.DEBUG)) {
+                    AlertLog.d(TAG, "Device id: " + idStr);
                 }
 
-                String idStr = Long.toHexString(idLong);
-
-                Log.i(TAG, "Device id: " + idStr);
+                metrics.recordDeviceFound(System.currentTimeMillis() - idRequestTime);
 
                 // Create an alert device object with the detected address, the port, and the id
                 device = new AlertDeviceModel();
                 device.setAddress(deviceAddrStr);
                 device.setPort(devicePort);
                 device.setId(idStr);
+
+                // Keep the connection for the client of the device
+                if (connectionCache.park(deviceAddrStr, devicePort, testSocket)) {
+                    testSocket = null;
+                }
             }
             else {
-                Log.i(TAG, "Device failed to provide id.");
+                AlertLog.d(TAG, "Device failed to provide id.");
+                metrics.recordProbeTimeout();
+                recordNoDevice(deviceAddrStr, AlertScanCache.Result.NO_ID);
             }
 
-            testSocket.close();
         }
         catch (UnknownHostException e) {
-            Log.i(TAG, "Could not find a device at " + deviceAddrStr + ":" + devicePort);
+            if (AlertLog.isLoggable(Log.DEBUG)) {
+                AlertLog.d(TAG, "Could not find a device at " + deviceAddrStr + ":" + devicePort);
+            }
+            metrics.recordProbeError();
         }
         catch (SocketTimeoutException e) {
-            Log.i(TAG, "Timeout while connecting to device " + deviceAddrStr
-                    + " at port " + devicePort);
+            if (AlertLog.isLoggable(Log.DEBUG)) {
+                AlertLog.d(TAG, "Timeout while connecting to device " + deviceAddrStr
+                        + " at port " + devicePort);
+            }
+            metrics.recordProbeTimeout();
+            recordConnectFailure(deviceAddrStr, e);
         }
         catch (IOException e) {
-            Log.i(TAG, "IOException while connecting to device " + deviceAddrStr
-                    + " at port " + devicePort);
+            if (AlertLog.isLoggable(Log.DEBUG)) {
+                AlertLog.d(TAG, "IOException while connecting to device " + deviceAddrStr
+                        + " at port " + devicePort);
+            }
+            metrics.recordProbeError();
+            recordConnectFailure(deviceAddrStr, e);
+        }
+        finally {
+            if (testSocket != null) {
+                try {
+                    testSocket.close();
+                }
+                catch (IOException e) {
+                    // Failed to close
+                }
+            }
         }
 
         // Return connection state
@@ -202,86 +834,102 @@ public class AlertDeviceScanTcp implements Runnable {
 
 
     /**
-     * When an object implementing interface <code>Runnable</code> is used
-     * to create a thread, starting the thread causes the object's
-     * <code>run</code> method to be called in that separately executing
-     * thread.
-     * <p>
-     * The general contract of the method <code>run</code> is that it may
-     * take any action whatsoever.
-     *
-     * @see Thread#run()
+     * Probes the addresses with blocking sockets using 'parallelism' tasks of the executor. The
+     * calling task acts as one of the workers. The workers do not wait for each other: the last
+     * one to finish completes the scan, so that no thread of the executor is blocked by
+     * workers queued behind other tasks.
      */
-    @Override
-    public void run() {
-        // Set Thread priority to background
-        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
-
-        // When this runnable is already running wait until the thread has finished
-        while ( !busy.compareAndSet(false, true) ) {
-            try {
-                synchronized (busy) {
-                    busy.wait();
+    private void scanAddressesBlocking() {
+        for (int i = 1; i < parallelism && runScan; i++) {
+            numWorkersActive.incrementAndGet();
+
+            boolean accepted = scanExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    android.os.Process.setThreadPriority(
+                            android.os.Process.THREAD_PRIORITY_BACKGROUND);
+
+                    try {
+                        scanNextAddresses();
+                    }
+                    catch (Exception e) {
+                        AlertLog.e(TAG, "Exception while scanning for alert devices.", e);
+                    }
+                    finally {
+                        onWorkerFinished();
+                    }
                 }
-            } catch (InterruptedException e) {
-                // Wakeup from sleep
+            });
+
+            if (!accepted) {
+                // The executor has been shut down, the remaining workers are not started
+                numWorkersActive.decrementAndGet();
+                break;
             }
         }
 
-        // Store the current Thread so that the shutdown method can interrupt it
-        scanThread = Thread.currentThread();
-
-        try {
-            int adrNodeNext = nodeAdrFirst;
-
-            // Set run flag
-            runScan = true;
+        // The scan task itself acts as a worker as well
+        scanNextAddresses();
+    }
 
-            // Repeat as long as the flag is true:
-            while (runScan) {
-                String scanAdrStr = networkAdrStr + "." + adrNodeNext;
+    /**
+     * Called when a worker of the scan has finished. Completes the scan after the last worker.
+     */
+    private void onWorkerFinished() {
+        if (numWorkersActive.decrementAndGet() > 0) {
+            return;
+        }
 
-                AlertDeviceModel device = scanAddress(scanAdrStr, alertRemotePort);
+        // Clean everything up after the last worker
+        AlertLog.i(TAG, "Finished scanning for alert devices.");
 
-                if (device != null) {
-                    Log.i(TAG, "Found alert node at address " + scanAdrStr);
+        runScan = false;
 
-                    // Notify listeners about the new device
-                    for (AlertDeviceScanListener listener:listenerList) {
-                        listener.onDeviceFound(device);
-                    }
-                }
+        metrics.recordScanFinished(System.currentTimeMillis() - scanStartTime);
 
-                if (adrNodeNext == nodeAdrLast) {
-                    runScan = false;
-                }
-                else {
-                    adrNodeNext += 1;
-                }
-            }
-        }
-        catch (Exception e) {
-            Log.e(TAG, "Exception while scanning for alert devices.", e);
-        }
-        finally {
-            // Clean everything up before leaving the run() method
-            Log.i(TAG, "Finished scanning for alert devices.");
+        // Allow the next scan to be started, also by the listeners
+        scanStarted.set(false);
 
-            // Notify listeners
+        // Notify listeners
+        synchronized (listenerList) {
             for (AlertDeviceScanListener listener:listenerList) {
                 listener.onScanFinished();
             }
+        }
+    }
 
-            // Set the stored Thread of AlertClientTcp to null
-            scanThread = null;
+    /**
+     * Probes the addresses of the range. Executed by a thread of the executor after the scan
+     * has been started by <code>start</code>.
+     */
+    @Override
+    public void run() {
+        // Set Thread priority to background
+        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
 
-            // Set busy flag to false after scan has finished or been aborted
-            synchronized (busy) {
-                busy.set(false);
-                busy.notify();
+        // The scan task is the first worker
+        numWorkersActive.set(1);
+
+        scanStartTime = System.currentTimeMillis();
+        metrics.recordScanStarted();
+
+        try {
+            adrIndexNext.set(0);
+            priorityAdrNext.set(0);
+
+            if (scanMode == ScanMode.NON_BLOCKING) {
+                sweepAddresses();
+            }
+            else {
+                scanAddressesBlocking();
             }
         }
-
+        catch (Exception e) {
+            AlertLog.e(TAG, "Exception while scanning for alert devices.", e);
+        }
+        finally {
+            onWorkerFinished();
+        }
     }
 
     /**
@@ -290,8 +938,10 @@ public class AlertDeviceScanTcp implements Runnable {
      * @param listener Listener object to be informed about scan events.
      */
     public void addListener(AlertDeviceScanListener listener) {
-        if ( !listenerList.contains(listener) ) {
-            listenerList.add(listener);
+        synchronized (listenerList) {
+            if ( !listenerList.contains(listener) ) {
+                listenerList.add(listener);
+            }
         }
     }
 
@@ -301,7 +951,36 @@ public class AlertDeviceScanTcp implements Runnable {
      * @param listener Listener object to be informed about scan events.
      */
     public void removeListener(AlertDeviceScanListener listener) {
-        listenerList.remove(listener);
+        synchronized (listenerList) {
+            listenerList.remove(listener);
+        }
+    }
+
+    /**
+     * State of a connection opened during a non-blocking sweep.
+     */
+    private static class Probe {
+
+        private final String deviceAddrStr;
+
+        private final ByteBuffer idBuffer = ByteBuffer.allocate(AlertClientTcp.ID_NUM_BYTES);
+
+        private SocketChannel channel;
+
+        private SelectionKey key;
+
+        private long deadline;
+
+        private long idRequestTime;
+
+        private boolean done;
+
+        // Detected device that has not been reported yet
+        private AlertDeviceModel device;
+
+        Probe(String deviceAddrStr) {
+            this.deviceAddrStr = deviceAddrStr;
+        }
     }
 
     /**
@@ -322,4 +1001,4 @@ public class AlertDeviceScanTcp implements Runnable {
         void onScanFinished();
 
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,186 @@
+package de.sikora.androidapp_alertclient;
+
+import android.util.Log;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes the long-running tasks of the AlertClientPool, i.e. client sessions, the client
+ * selector and device scans, on a bounded set of named, reusable threads.
+ *
+ * At most the configured number of tasks run concurrently. Further tasks wait in a queue until
+ * a thread becomes available. Idle threads are released after some time.
+ */
+public class AlertExecutor {
+
+    // Tag for log messages generated by this class
+    private static final String TAG = AlertExecutor.class.getSimpleName();
+
+    // Time after which an idle thread is released
+    private static final long TIME_THREAD_KEEP_ALIVE = 30000;
+
+    // Executor performing the tasks
+    private final ThreadPoolExecutor executor;
+
+    // Maximum number of threads
+    private final int maxThreads;
+
+    // Number of tasks that could not be executed because the executor has been shut down
+    private final AtomicLong numRejected = new AtomicLong(0);
+
+
+    /**
+     * Creates a new executor. Threads are created when needed.
+     *
+     * @param name       Name prefix of the threads.
+     * @param maxThreads Maximum number of tasks running concurrently.
+     */
+    public AlertExecutor(final String name, int maxThreads) {
+        if (maxThreads <= 0) {
+            throw new IllegalArgumentException("Invalid number of threads: " + maxThreads);
+        }
+
+        this.maxThreads = maxThreads;
+
+        ThreadFactory threadFactory = new ThreadFactory() {
+
+            // Number of the next thread
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, name + "-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        executor = new ThreadPoolExecutor(maxThreads, maxThreads,
+                TIME_THREAD_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), threadFactory);
+
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Executes a task as soon as a thread is available.
+     *
+     * @param task Task to be executed.
+     * @return True, if the task has been accepted, false if the executor has been shut down.
+     */
+    public boolean execute(Runnable task) {
+        try {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException e) {
+            numRejected.incrementAndGet();
+            Log.w(TAG, "Task rejected, executor has been shut down.");
+            return false;
+        }
+
+        if (!executor.getQueue().isEmpty()) {
+            Log.w(TAG, "All " + maxThreads + " threads busy, tasks waiting: "
+                    + executor.getQueue().size());
+        }
+
+        return true;
+    }
+
+    /**
+     * Stops accepting tasks and waits until all running tasks have finished. The tasks must
+     * have been told to stop before. Tasks that are still running when the timeout expires are
+     * interrupted, and waiting tasks are discarded.
+     *
+     * @param timeout Maximum time in ms to wait for the tasks.
+     * @return True, if all tasks have finished.
+     */
+    public boolean shutdownAndJoin(long timeout) {
+        executor.shutdown();
+
+        try {
+            if (executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+
+            Log.w(TAG, "Tasks did not finish in time, interrupting "
+                    + executor.getActiveCount() + " threads.");
+
+            executor.shutdownNow();
+
+            return executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * Returns the number of threads that are currently executing tasks.
+     *
+     * @return Number of active threads.
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Returns the number of threads, both active and idle.
+     *
+     * @return Number of threads.
+     */
+    public int getPoolSize() {
+        return executor.getPoolSize();
+    }
+
+    /**
+     * Returns the largest number of threads that have existed at the same time.
+     *
+     * @return Number of threads.
+     */
+    public int getLargestPoolSize() {
+        return executor.getLargestPoolSize();
+    }
+
+    /**
+     * Returns the number of tasks waiting for a thread.
+     *
+     * @return Number of queued tasks.
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Returns the number of tasks that have finished.
+     *
+     * @return Approximate number of completed tasks.
+     */
+    public long getCompletedTaskCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * Returns the number of tasks that have been rejected after shutdown.
+     *
+     * @return Number of rejected tasks.
+     */
+    public long getRejectedCount() {
+        return numRejected.get();
+    }
+}
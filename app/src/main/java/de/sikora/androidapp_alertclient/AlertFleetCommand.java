@@ -0,0 +1,423 @@
+package de.sikora.androidapp_alertclient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Sets one alert level on a set of alert devices at the same time and collects the result of
+ * each device.
+ *
+ * The level is handed to the clients of all devices at once, so that the selector or the client
+ * threads send it concurrently. A device has acknowledged the level as soon as it reports the
+ * level back to its client after the client has written the level. The command is finished
+ * when all devices have acknowledged the level or the deadline has passed, whichever comes
+ * first.
+ *
+ * Commands are created by AlertClientPool.setAlertLevel.
+ */
+public class AlertFleetCommand implements AlertDeviceModel.AlertStateListener {
+
+    /**
+     * State of the command at one device.
+     */
+    public enum Status {
+        // Level sent, waiting for the acknowledgement
+        PENDING,
+
+        // The device has reported the level back
+        ACKNOWLEDGED,
+
+        // The device has not reported the level back before the deadline
+        TIMEOUT,
+
+        // The client of the device has not been connected at the deadline
+        DISCONNECTED,
+
+        // The device is not in the pool
+        NOT_IN_POOL,
+
+        // The client of the device has not been started
+        NOT_RUNNING
+    }
+
+    // Tag for log messages generated by this class
+    private static final String TAG = AlertFleetCommand.class.getSimpleName();
+
+    // Thread that finishes commands at their deadline and notifies the listeners
+    private static Timer deadlineTimer = null;
+
+    // Alert level that is set
+    private final int alertLevel;
+
+    // Results of the devices in the order in which the devices have been passed
+    private final List<DeviceResult> results = new ArrayList<>();
+
+    // Results of the devices that are waiting for the acknowledgement by device object
+    private final Map<AlertDeviceModel, DeviceResult> pendingResults = new IdentityHashMap<>();
+
+    // Listener informed when the command is finished, may be null
+    private final FleetCommandListener listener;
+
+    // Time at which the command has been started
+    private long startTime;
+
+    // Time at which unacknowledged devices are considered failed
+    private long deadline;
+
+    // Task that finishes the command at the deadline
+    private TimerTask deadlineTask = null;
+
+    // Flag indicating that the results are final, guarded by this
+    private boolean finished = false;
+
+
+    /**
+     * Creates a command for the specified devices. The command is sent by
+     * <code>start</code>.
+     *
+     * @param alertLevel Alert level to be set.
+     * @param listener   Listener informed when the command is finished, or null.
+     */
+    AlertFleetCommand(int alertLevel, FleetCommandListener listener) {
+        this.alertLevel = alertLevel;
+        this.listener = listener;
+    }
+
+    /**
+     * Adds a device that cannot be reached through a client.
+     *
+     * @param device Device.
+     * @param status NOT_IN_POOL or NOT_RUNNING.
+     */
+    void addFailedDevice(AlertDeviceModel device, Status status) {
+        results.add(new DeviceResult(device, null, status));
+    }
+
+    /**
+     * Adds a device whose client shall send the level.
+     *
+     * @param device Device object of the pool, which is observed by the client.
+     * @param client Client of the device.
+     */
+    void addDevice(AlertDeviceModel device, AlertClientTcp client) {
+        // A device passed twice is commanded once
+        if (pendingResults.containsKey(device)) {
+            return;
+        }
+
+        DeviceResult result = new DeviceResult(device, client, Status.PENDING);
+
+        results.add(result);
+        pendingResults.put(device, result);
+    }
+
+    /**
+     * Hands the level to the clients of all added devices and schedules the deadline. Devices
+     * must not be added afterwards.
+     *
+     * @param timeout Time in ms within which the devices must acknowledge the level.
+     */
+    void start(long timeout) {
+        List<AlertDeviceModel> devices;
+
+        synchronized (this) {
+            startTime = System.currentTimeMillis();
+            deadline = startTime + timeout;
+
+            if (pendingResults.isEmpty()) {
+                finish(startTime);
+                return;
+            }
+
+            devices = new ArrayList<>(pendingResults.keySet());
+
+            // Listen for the acknowledgements before the level can reach any device
+            for (AlertDeviceModel device : devices) {
+                device.addListener(this);
+            }
+
+            // Only levels reported after the level has been written acknowledge the command
+            for (DeviceResult result : pendingResults.values()) {
+                result.numLevelWritesAtStart = result.client.getNumLevelWrites();
+            }
+
+            deadlineTask = new TimerTask() {
+                @Override
+                public void run() {
+                    synchronized (AlertFleetCommand.this) {
+                        finish(System.currentTimeMillis());
+                    }
+                }
+            };
+
+            getDeadlineTimer().schedule(deadlineTask, timeout);
+        }
+
+        // Notify outside of the lock, since the clients may acknowledge in the same thread
+        for (AlertDeviceModel device : devices) {
+            device.setAlertLevelAndNotify(alertLevel, this);
+        }
+    }
+
+    public int getAlertLevel() {
+        return alertLevel;
+    }
+
+    public synchronized long getStartTime() {
+        return startTime;
+    }
+
+    public synchronized long getDeadline() {
+        return deadline;
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Waits until all devices have acknowledged the level or the deadline has passed.
+     *
+     * @return Results of all devices.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized List<DeviceResult> awaitResults() throws InterruptedException {
+        while (!finished) {
+            long timeLeft = deadline - System.currentTimeMillis();
+
+            if (timeLeft <= 0) {
+                // The deadline task may be delayed, e.g. by a busy timer thread
+                finish(System.currentTimeMillis());
+            }
+            else {
+                wait(timeLeft);
+            }
+        }
+
+        return getResults();
+    }
+
+    /**
+     * Returns the results of all devices. Devices that have not acknowledged the level yet are
+     * PENDING unless the command is finished.
+     *
+     * @return Results in the order in which the devices have been passed.
+     */
+    public synchronized List<DeviceResult> getResults() {
+        List<DeviceResult> copy = new ArrayList<>(results.size());
+
+        for (DeviceResult result : results) {
+            copy.add(new DeviceResult(result));
+        }
+
+        return Collections.unmodifiableList(copy);
+    }
+
+    /**
+     * Returns the number of devices with the specified status.
+     *
+     * @param status Status.
+     * @return Number of devices.
+     */
+    public synchronized int getNumDevices(Status status) {
+        int count = 0;
+
+        for (DeviceResult result : results) {
+            if (result.status == status) {
+                count += 1;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns whether all devices have acknowledged the level.
+     *
+     * @return True, if the level has been set on all devices.
+     */
+    public synchronized boolean isSuccessful() {
+        return getNumDevices(Status.ACKNOWLEDGED) == results.size();
+    }
+
+    /**
+     * Called by the clients when a device reports its alert level.
+     */
+    @Override
+    public void onAlertLevelEvent(AlertDeviceModel alertState, AlertDeviceModel.AlertStateEvent ev) {
+        DeviceResult result;
+
+        synchronized (this) {
+            result = pendingResults.get(alertState);
+
+            // Only the level reported by the device after the client has written the level
+            // acknowledges the command, since a device that is at the level already reports it
+            // in response to any read request
+            if (finished || result == null || ev.getEventSource() != result.client
+                    || alertState.getAlertLevel() != alertLevel
+                    || result.client.getNumLevelWrites() <= result.numLevelWritesAtStart) {
+                return;
+            }
+
+            long curTime = System.currentTimeMillis();
+
+            result.status = Status.ACKNOWLEDGED;
+            result.latency = curTime - startTime;
+
+            pendingResults.remove(alertState);
+
+            if (pendingResults.isEmpty()) {
+                finish(curTime);
+            }
+        }
+
+        alertState.removeListener(this);
+    }
+
+    @Override
+    public void onConnectionStateEvent(AlertDeviceModel alertState,
+                                       AlertDeviceModel.AlertStateEvent ev) {
+    }
+
+    /**
+     * Fails the devices that have not acknowledged the level, stops listening to them, and
+     * notifies the waiting threads and the listener. Called with the lock held.
+     */
+    private void finish(long curTime) {
+        if (finished) {
+            return;
+        }
+
+        finished = true;
+
+        if (deadlineTask != null) {
+            deadlineTask.cancel();
+        }
+
+        for (Map.Entry<AlertDeviceModel, DeviceResult> entry : pendingResults.entrySet()) {
+            DeviceResult result = entry.getValue();
+
+            result.status = entry.getKey().isConnected() ? Status.TIMEOUT : Status.DISCONNECTED;
+            result.latency = curTime - startTime;
+
+            entry.getKey().removeListener(this);
+        }
+
+        pendingResults.clear();
+
+        notifyAll();
+
+        // Inform the listener from the timer thread, so that the network threads do not wait
+        if (listener != null) {
+            getDeadlineTimer().schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    try {
+                        listener.onFleetCommandFinished(AlertFleetCommand.this);
+                    }
+                    catch (RuntimeException e) {
+                        // An exception would cancel the timer and thus all other commands
+                        AlertLog.e(TAG, "Fleet command listener failed.", e);
+                    }
+                }
+            }, 0);
+        }
+    }
+
+    private static synchronized Timer getDeadlineTimer() {
+        if (deadlineTimer == null) {
+            deadlineTimer = new Timer(AlertFleetCommand.class.getSimpleName(), true);
+        }
+
+        return deadlineTimer;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "level=" + alertLevel + ", devices=" + results.size()
+                + ", acknowledged=" + getNumDevices(Status.ACKNOWLEDGED)
+                + ", pending=" + getNumDevices(Status.PENDING)
+                + ", timeout=" + getNumDevices(Status.TIMEOUT)
+                + ", disconnected=" + getNumDevices(Status.DISCONNECTED)
+                + ", not in pool=" + getNumDevices(Status.NOT_IN_POOL)
+                + ", not running=" + getNumDevices(Status.NOT_RUNNING);
+    }
+
+    /**
+     * Result of the command at one device.
+     */
+    public static class DeviceResult {
+
+        private final AlertDeviceModel device;
+
+        private final AlertClientTcp client;
+
+        private Status status;
+
+        // Time between start and acknowledgement or failure in ms
+        private long latency = 0;
+
+        // Number of level writes of the client when the command has been started
+        private long numLevelWritesAtStart = 0;
+
+        private DeviceResult(AlertDeviceModel device, AlertClientTcp client, Status status) {
+            this.device = device;
+            this.client = client;
+            this.status = status;
+        }
+
+        private DeviceResult(DeviceResult result) {
+            this.device = result.device;
+            this.client = result.client;
+            this.status = result.status;
+            this.latency = result.latency;
+        }
+
+        public AlertDeviceModel getDevice() {
+            return device;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns the time between the start of the command and the acknowledgement by the
+         * device, or the failure of the device at the deadline.
+         *
+         * @return Time in ms.
+         */
+        public long getLatency() {
+            return latency;
+        }
+
+        public boolean isAcknowledged() {
+            return status == Status.ACKNOWLEDGED;
+        }
+
+        @Override
+        public String toString() {
+            return device.getAddress() + ": " + status + " (" + latency + " ms)";
+        }
+    }
+
+    /**
+     * Interface that must be implemented by objects that shall be informed when a fleet command
+     * is finished.
+     */
+    public interface FleetCommandListener {
+
+        /**
+         * This method is called from a background thread when all devices have acknowledged
+         * the level or the deadline has passed.
+         *
+         * @param command Finished command.
+         */
+        void onFleetCommandFinished(AlertFleetCommand command);
+    }
+}
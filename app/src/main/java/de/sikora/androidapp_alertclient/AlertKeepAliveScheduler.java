@@ -0,0 +1,254 @@
+package de.sikora.androidapp_alertclient;
+
+import android.util.Log;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Schedules the keep-alive read requests of all alert clients from a single thread.
+ *
+ * The timers are kept in a hashed timer wheel: each slot covers one tick and holds a linked
+ * list of the timers that expire in that tick, possibly after several rotations of the wheel.
+ * Scheduling and expiring a timer takes constant time and does not allocate memory.
+ *
+ * Timers are evaluated lazily. When a timer expires, the client is asked for its current due
+ * time, which may have been moved by traffic in the meantime. The timer is then either moved
+ * to the new due time or the client sends a read request and returns the time of the next one.
+ */
+public class AlertKeepAliveScheduler implements Runnable {
+
+    // Tag for log messages generated by this class
+    private static final String TAG = AlertKeepAliveScheduler.class.getSimpleName();
+
+    // Duration of one tick of the wheel in ms
+    private static final long TIME_TICK = 100;
+
+    // Number of slots of the wheel, must be a power of two
+    private static final int NUM_SLOTS = 256;
+
+    private static AlertKeepAliveScheduler instance = null;
+
+    // First timer of each slot
+    private final Timer[] slots = new Timer[NUM_SLOTS];
+
+    // Clients whose timers shall be added to the wheel
+    private final ConcurrentLinkedQueue<AlertClientTcp> scheduleQueue = new ConcurrentLinkedQueue<>();
+
+    // Number of timers in the wheel, only accessed by the scheduler thread
+    private int numTimers = 0;
+
+    // Tick that has been processed last
+    private long currentTick;
+
+    // Thread in which the run() method is executed
+    private Thread schedulerThread = null;
+
+
+    /**
+     * Returns the scheduler shared by all clients. The scheduler thread is started on first use.
+     *
+     * @return Scheduler instance.
+     */
+    public static synchronized AlertKeepAliveScheduler getInstance() {
+        if (instance == null) {
+            instance = new AlertKeepAliveScheduler();
+            instance.schedulerThread = new Thread(instance, TAG);
+            instance.schedulerThread.setDaemon(true);
+            instance.schedulerThread.start();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Private constructor that is used to create a singleton instance by the
+     * <code>getInstance</code> method.
+     */
+    private AlertKeepAliveScheduler() {
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * Creates a scheduler whose wheel starts at the specified time. The timers are only
+     * processed by <code>advance</code>, e.g. to drive the wheel with a simulated clock.
+     *
+     * @param curTime Current time in ms.
+     */
+    AlertKeepAliveScheduler(long curTime) {
+        currentTick = curTime / TIME_TICK;
+    }
+
+    /**
+     * Adds the keep-alive timer of a client to the wheel. The first expiry is the client's
+     * current keep-alive due time. The timer stays in the wheel until the client stops.
+     * Scheduling a client whose timer is already in the wheel has no effect.
+     *
+     * @param client Client to be scheduled.
+     */
+    public void schedule(AlertClientTcp client) {
+        scheduleQueue.add(client);
+
+        synchronized (this) {
+            notify();
+        }
+    }
+
+    /**
+     * Advances the wheel tick by tick and processes the expired timers.
+     */
+    @Override
+    public void run() {
+        // Set Thread priority to background
+        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+
+        Log.i(TAG, "Keep-alive scheduler started.");
+
+        while (true) {
+            try {
+                // Sleep until the next tick, or until a timer is added if the wheel is empty
+                synchronized (this) {
+                    if (scheduleQueue.isEmpty()) {
+                        if (numTimers == 0) {
+                            wait();
+                        }
+                        else {
+                            long timeToNextTick = (currentTick + 1) * TIME_TICK
+                                    - System.currentTimeMillis();
+
+                            if (timeToNextTick > 0) {
+                                wait(timeToNextTick);
+                            }
+                        }
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                // Wakeup from sleep
+            }
+
+            advance(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Processes the ticks that have passed and then adds the timers of newly scheduled clients.
+     * The ticks are processed first, so that a new timer is placed relative to the current
+     * tick, also after the wheel has been idle for a long time.
+     *
+     * @param curTime Current time in ms.
+     */
+    void advance(long curTime) {
+        // Process all ticks that have passed, at most one rotation of the wheel
+        long lastTick = curTime / TIME_TICK;
+
+        if (lastTick - currentTick > NUM_SLOTS) {
+            currentTick = lastTick - NUM_SLOTS;
+        }
+
+        while (currentTick < lastTick) {
+            currentTick += 1;
+            expire((int) (currentTick & (NUM_SLOTS - 1)), curTime);
+        }
+
+        // Add the timers of newly scheduled clients
+        AlertClientTcp client;
+
+        while ((client = scheduleQueue.poll()) != null) {
+            Timer timer = client.getKeepAliveTimer();
+
+            if (!timer.scheduled) {
+                insert(timer, client.getKeepAliveDue());
+            }
+        }
+    }
+
+    /**
+     * Processes the timers of a slot that expire in the current rotation.
+     */
+    private void expire(int slot, long curTime) {
+        Timer timer = slots[slot];
+
+        while (timer != null) {
+            Timer next = timer.next;
+
+            if (timer.rounds > 0) {
+                timer.rounds -= 1;
+            }
+            else {
+                remove(timer);
+
+                // Ask the client for the next expiry, a negative value stops the timer
+                long nextDue = timer.client.onKeepAliveTimer(curTime);
+
+                if (nextDue >= 0) {
+                    insert(timer, nextDue);
+                }
+            }
+
+            timer = next;
+        }
+    }
+
+    private void insert(Timer timer, long dueTime) {
+        // Expire in the next tick at the earliest
+        long dueTick = Math.max(dueTime / TIME_TICK, currentTick + 1);
+        long ticks = dueTick - currentTick;
+
+        int slot = (int) (dueTick & (NUM_SLOTS - 1));
+
+        timer.rounds = (ticks - 1) / NUM_SLOTS;
+        timer.slot = slot;
+        timer.scheduled = true;
+
+        timer.prev = null;
+        timer.next = slots[slot];
+
+        if (timer.next != null) {
+            timer.next.prev = timer;
+        }
+
+        slots[slot] = timer;
+        numTimers += 1;
+    }
+
+    private void remove(Timer timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        }
+        else {
+            slots[timer.slot] = timer.next;
+        }
+
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+
+        timer.prev = null;
+        timer.next = null;
+        timer.scheduled = false;
+        numTimers -= 1;
+    }
+
+    /**
+     * Keep-alive timer of a client. Each client owns one timer that is reused, and the timer is
+     * only modified by the scheduler thread.
+     */
+    static class Timer {
+
+        private final AlertClientTcp client;
+
+        private Timer prev;
+
+        private Timer next;
+
+        private int slot;
+
+        private long rounds;
+
+        private boolean scheduled;
+
+        Timer(AlertClientTcp client) {
+            this.client = client;
+        }
+    }
+}
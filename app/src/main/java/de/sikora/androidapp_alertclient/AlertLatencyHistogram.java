@@ -0,0 +1,153 @@
+package de.sikora.androidapp_alertclient;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in ms with a fixed memory footprint.
+ *
+ * Values below 16 are counted exactly. Larger values are counted in buckets whose width grows
+ * with the magnitude of the value: each power of two is divided into 16 buckets, so any value
+ * is reported with a relative error of less than 7%. Values above the largest trackable value
+ * are counted in the last bucket.
+ *
+ * Recording does not lock and does not allocate memory, so it can be called from the
+ * communication threads.
+ */
+public class AlertLatencyHistogram {
+
+    // Number of bits resolving the value within one power of two
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // Largest trackable value is 2^MAGNITUDE_MAX - 1 ms, about 4.6 hours
+    private static final int MAGNITUDE_MAX = 24;
+
+    // Number of buckets
+    private static final int BUCKET_COUNT = (MAGNITUDE_MAX - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    // Largest trackable value
+    private static final long VALUE_MAX = (1L << MAGNITUDE_MAX) - 1;
+
+    // Number of recorded values per bucket
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    // Number of recorded values
+    private final AtomicLong totalCount = new AtomicLong(0);
+
+    // Sum of recorded values
+    private final AtomicLong totalSum = new AtomicLong(0);
+
+    // Largest recorded value
+    private final AtomicLong maxValue = new AtomicLong(0);
+
+
+    /**
+     * Records a value.
+     *
+     * @param value Value in ms, negative values are recorded as 0.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts.incrementAndGet(bucketIndex(Math.min(value, VALUE_MAX)));
+        totalCount.incrementAndGet();
+        totalSum.addAndGet(value);
+
+        long max = maxValue.get();
+
+        while (value > max && !maxValue.compareAndSet(max, value)) {
+            max = maxValue.get();
+        }
+    }
+
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return Mean in ms or 0 if no value has been recorded.
+     */
+    public double getMean() {
+        long count = totalCount.get();
+
+        return (count > 0) ? (double) totalSum.get() / count : 0;
+    }
+
+    /**
+     * Returns the value below which the specified percentage of the recorded values lies.
+     *
+     * @param percentile Percentage between 0 and 100.
+     * @return Value in ms or 0 if no value has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = totalCount.get();
+
+        if (count == 0) {
+            return 0;
+        }
+
+        // Rank of the requested value, at least the first value
+        long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+
+            if (seen >= rank) {
+                return Math.min(bucketValue(i), maxValue.get());
+            }
+        }
+
+        // Values recorded concurrently may not have been counted yet
+        return maxValue.get();
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+
+        totalCount.set(0);
+        totalSum.set(0);
+        maxValue.set(0);
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        // Position of the highest set bit, at least SUB_BUCKET_BITS
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) (value >> shift) - SUB_BUCKET_COUNT;
+    }
+
+    /**
+     * Returns the value that represents a bucket, i.e. the middle of its range.
+     */
+    private static long bucketValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long lowerBound = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+
+        return lowerBound + ((1L << shift) >> 1);
+    }
+}
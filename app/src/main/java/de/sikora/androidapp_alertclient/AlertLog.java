@@ -0,0 +1,242 @@
+package de.sikora.androidapp_alertclient;
+
+import android.util.Log;
+
+/**
+ * Level-gated logging for the network code of the alert clients and scans.
+ *
+ * Messages below the configured level are discarded. On hot paths the caller checks
+ * <code>isLoggable</code> before building a message, so that a disabled level costs neither
+ * string concatenation nor allocation:
+ *
+ * <pre>
+ *     if (AlertLog.isLoggable(Log.DEBUG)) {
+ *         AlertLog.d(tag, "Received '" + rxValue + "' from server.");
+ *     }
+ * </pre>
+ *
+ * Optionally, messages are handed to an asynchronous sink: a bounded ring buffer that is
+ * written to the system log by a background thread, so that the network threads never wait
+ * for log output. Messages are dropped and counted if the ring buffer is full.
+ */
+public final class AlertLog {
+
+    // Size of the ring buffer of the asynchronous sink
+    private static final int ASYNC_BUFFER_SIZE = 256;
+
+    // Lowest level that is logged
+    private static volatile int minLevel = Log.INFO;
+
+    // Asynchronous sink, null if messages are written directly
+    private static volatile AsyncSink asyncSink = null;
+
+
+    private AlertLog() {
+    }
+
+    /**
+     * Sets the lowest level that is logged.
+     *
+     * @param level One of the level constants of android.util.Log, e.g. Log.DEBUG.
+     */
+    public static void setLevel(int level) {
+        minLevel = level;
+    }
+
+    public static int getLevel() {
+        return minLevel;
+    }
+
+    /**
+     * Returns whether messages of the specified level are logged.
+     *
+     * @param level One of the level constants of android.util.Log.
+     * @return True, if messages of the level are logged.
+     */
+    public static boolean isLoggable(int level) {
+        return level >= minLevel;
+    }
+
+    /**
+     * Enables or disables the asynchronous sink. When it is disabled, messages that are still
+     * buffered are written before the sink thread ends.
+     *
+     * @param enabled True, if messages shall be written by a background thread.
+     */
+    public static synchronized void setAsyncEnabled(boolean enabled) {
+        AsyncSink sink = asyncSink;
+
+        if (enabled && sink == null) {
+            sink = new AsyncSink();
+            asyncSink = sink;
+
+            Thread sinkThread = new Thread(sink, AlertLog.class.getSimpleName());
+            sinkThread.setDaemon(true);
+            sinkThread.start();
+        }
+        else if (!enabled && sink != null) {
+            asyncSink = null;
+            sink.stop();
+        }
+    }
+
+    public static boolean isAsyncEnabled() {
+        return asyncSink != null;
+    }
+
+    /**
+     * Returns the number of messages dropped because the buffer of the asynchronous sink was
+     * full.
+     *
+     * @return Number of dropped messages of the current sink.
+     */
+    public static long getDroppedCount() {
+        AsyncSink sink = asyncSink;
+
+        return (sink != null) ? sink.getDroppedCount() : 0;
+    }
+
+    public static void d(String tag, String msg) {
+        println(Log.DEBUG, tag, msg);
+    }
+
+    public static void i(String tag, String msg) {
+        println(Log.INFO, tag, msg);
+    }
+
+    public static void i(String tag, String msg, Throwable tr) {
+        if (isLoggable(Log.INFO)) {
+            println(Log.INFO, tag, msg + '\n' + Log.getStackTraceString(tr));
+        }
+    }
+
+    public static void w(String tag, String msg) {
+        println(Log.WARN, tag, msg);
+    }
+
+    public static void e(String tag, String msg, Throwable tr) {
+        if (isLoggable(Log.ERROR)) {
+            println(Log.ERROR, tag, msg + '\n' + Log.getStackTraceString(tr));
+        }
+    }
+
+    /**
+     * Logs a message if its level is enabled.
+     *
+     * @param level One of the level constants of android.util.Log.
+     * @param tag   Tag of the message.
+     * @param msg   Message.
+     */
+    public static void println(int level, String tag, String msg) {
+        if (!isLoggable(level)) {
+            return;
+        }
+
+        AsyncSink sink = asyncSink;
+
+        if (sink != null) {
+            // Dropped and counted if the buffer is full
+            sink.offer(level, tag, msg);
+        }
+        else {
+            Log.println(level, tag, msg);
+        }
+    }
+
+    /**
+     * Ring buffer of messages that is written to the system log by its own thread.
+     */
+    private static class AsyncSink implements Runnable {
+
+        private final int[] levels = new int[ASYNC_BUFFER_SIZE];
+
+        private final String[] tags = new String[ASYNC_BUFFER_SIZE];
+
+        private final String[] messages = new String[ASYNC_BUFFER_SIZE];
+
+        // Index of the oldest message, guarded by this
+        private int head = 0;
+
+        // Number of buffered messages, guarded by this
+        private int count = 0;
+
+        // Number of messages dropped because the buffer was full, guarded by this
+        private long numDropped = 0;
+
+        // Flag that is used to stop the run() method, guarded by this
+        private boolean running = true;
+
+        /**
+         * Adds a message to the buffer without waiting.
+         *
+         * @return True, if the message has been buffered, false if it has been dropped.
+         */
+        synchronized boolean offer(int level, String tag, String msg) {
+            if (count == ASYNC_BUFFER_SIZE) {
+                numDropped += 1;
+                return false;
+            }
+
+            int index = (head + count) % ASYNC_BUFFER_SIZE;
+
+            levels[index] = level;
+            tags[index] = tag;
+            messages[index] = msg;
+            count += 1;
+
+            // Wake up the sink thread if the buffer has been empty
+            if (count == 1) {
+                notify();
+            }
+
+            return true;
+        }
+
+        synchronized void stop() {
+            running = false;
+            notify();
+        }
+
+        synchronized long getDroppedCount() {
+            return numDropped;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                int level;
+                String tag;
+                String msg;
+
+                synchronized (this) {
+                    while (count == 0 && running) {
+                        try {
+                            wait();
+                        }
+                        catch (InterruptedException e) {
+                            // Wakeup from sleep
+                        }
+                    }
+
+                    // Stop after all buffered messages have been written
+                    if (count == 0) {
+                        return;
+                    }
+
+                    level = levels[head];
+                    tag = tags[head];
+                    msg = messages[head];
+
+                    tags[head] = null;
+                    messages[head] = null;
+
+                    head = (head + 1) % ASYNC_BUFFER_SIZE;
+                    count -= 1;
+                }
+
+                // Write outside of the lock so that the network threads are not blocked
+                Log.println(level, tag, msg);
+            }
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package de.sikora.androidapp_alertclient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the metrics of all alert devices and of the device scans, so that slow or flaky
+ * devices can be found in a large deployment.
+ *
+ * The metrics of a device are kept by address until the device is removed from the pool, so
+ * they survive restarts and replacements of its client.
+ */
+public class AlertMetrics {
+
+    private static AlertMetrics instance = null;
+
+    // Metrics of the devices by address
+    private final ConcurrentHashMap<String, AlertDeviceMetrics> deviceMetrics =
+            new ConcurrentHashMap<>();
+
+    // Time between id request and complete id response of detected devices
+    private final AlertLatencyHistogram idResponseTimes = new AlertLatencyHistogram();
+
+    // Duration of completed scans
+    private final AlertLatencyHistogram scanDurations = new AlertLatencyHistogram();
+
+    // Number of started scans
+    private final AtomicLong numScans = new AtomicLong(0);
+
+    // Number of probed addresses
+    private final AtomicLong numProbes = new AtomicLong(0);
+
+    // Number of addresses skipped because the scan cache knows them as no device
+    private final AtomicLong numProbesSkipped = new AtomicLong(0);
+
+    // Number of probes that detected a device
+    private final AtomicLong numDevicesFound = new AtomicLong(0);
+
+    // Number of probes that timed out while connecting or waiting for the id
+    private final AtomicLong numProbeTimeouts = new AtomicLong(0);
+
+    // Number of probes that failed for other reasons, e.g. connection refused
+    private final AtomicLong numProbeErrors = new AtomicLong(0);
+
+
+    public static synchronized AlertMetrics getInstance() {
+        if (instance == null) {
+            instance = new AlertMetrics();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Private constructor that is used to create a singleton instance by the
+     * <code>getInstance</code> method.
+     */
+    private AlertMetrics() {
+    }
+
+    /**
+     * Returns the metrics of the device with the specified address. The metrics are created on
+     * first access.
+     *
+     * @param address Address of the device.
+     * @return Metrics of the device.
+     */
+    public AlertDeviceMetrics getDeviceMetrics(String address) {
+        AlertDeviceMetrics metrics = deviceMetrics.get(address);
+
+        if (metrics == null) {
+            AlertDeviceMetrics newMetrics = new AlertDeviceMetrics(address);
+            metrics = deviceMetrics.putIfAbsent(address, newMetrics);
+
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Removes the metrics of a device that is no longer used.
+     *
+     * @param address Address of the device.
+     */
+    public void removeDeviceMetrics(String address) {
+        deviceMetrics.remove(address);
+    }
+
+    /**
+     * Returns snapshots of the metrics of all devices.
+     *
+     * @return List of snapshots in no particular order.
+     */
+    public List<AlertDeviceMetrics.Snapshot> getDeviceSnapshots() {
+        List<AlertDeviceMetrics.Snapshot> snapshots = new ArrayList<>(deviceMetrics.size());
+
+        for (AlertDeviceMetrics metrics : deviceMetrics.values()) {
+            snapshots.add(metrics.getSnapshot());
+        }
+
+        return snapshots;
+    }
+
+    /**
+     * Returns the devices with the highest 99th percentile of the response time.
+     *
+     * @param maxCount Maximum number of devices.
+     * @return Snapshots of the slowest devices, slowest first.
+     */
+    public List<AlertDeviceMetrics.Snapshot> getSlowestDevices(int maxCount) {
+        return getTopDevices(maxCount, new Comparator<AlertDeviceMetrics.Snapshot>() {
+            @Override
+            public int compare(AlertDeviceMetrics.Snapshot s1, AlertDeviceMetrics.Snapshot s2) {
+                return compareLongs(s2.getResponseTimeP99(), s1.getResponseTimeP99());
+            }
+        });
+    }
+
+    /**
+     * Returns the devices with the highest number of failures, i.e. missed responses, failed
+     * connection attempts, and lost connections.
+     *
+     * @param maxCount Maximum number of devices.
+     * @return Snapshots of the flakiest devices, flakiest first.
+     */
+    public List<AlertDeviceMetrics.Snapshot> getFlakiestDevices(int maxCount) {
+        return getTopDevices(maxCount, new Comparator<AlertDeviceMetrics.Snapshot>() {
+            @Override
+            public int compare(AlertDeviceMetrics.Snapshot s1, AlertDeviceMetrics.Snapshot s2) {
+                return compareLongs(s2.getNumFailures(), s1.getNumFailures());
+            }
+        });
+    }
+
+    private List<AlertDeviceMetrics.Snapshot> getTopDevices(
+            int maxCount, Comparator<AlertDeviceMetrics.Snapshot> comparator) {
+        List<AlertDeviceMetrics.Snapshot> snapshots = getDeviceSnapshots();
+
+        Collections.sort(snapshots, comparator);
+
+        return snapshots.subList(0, Math.min(maxCount, snapshots.size()));
+    }
+
+    private static int compareLongs(long value1, long value2) {
+        return (value1 < value2) ? -1 : ((value1 == value2) ? 0 : 1);
+    }
+
+    public void recordScanStarted() {
+        numScans.incrementAndGet();
+    }
+
+    /**
+     * Records the duration of a completed or aborted scan.
+     *
+     * @param duration Duration in ms.
+     */
+    public void recordScanFinished(long duration) {
+        scanDurations.record(duration);
+    }
+
+    public void recordProbe() {
+        numProbes.incrementAndGet();
+    }
+
+    public void recordProbeSkipped() {
+        numProbesSkipped.incrementAndGet();
+    }
+
+    /**
+     * Records that a probe detected a device.
+     *
+     * @param idResponseTime Time between id request and complete id response in ms.
+     */
+    public void recordDeviceFound(long idResponseTime) {
+        numDevicesFound.incrementAndGet();
+        idResponseTimes.record(idResponseTime);
+    }
+
+    public void recordProbeTimeout() {
+        numProbeTimeouts.incrementAndGet();
+    }
+
+    public void recordProbeError() {
+        numProbeErrors.incrementAndGet();
+    }
+
+    /**
+     * Returns a snapshot of the scan metrics.
+     *
+     * @return Snapshot of the scan metrics.
+     */
+    public ScanSnapshot getScanSnapshot() {
+        return new ScanSnapshot(this);
+    }
+
+    /**
+     * Scan metrics at a point in time.
+     */
+    public static class ScanSnapshot {
+
+        private final long numScans;
+
+        private final long numProbes;
+
+        private final long numProbesSkipped;
+
+        private final long numDevicesFound;
+
+        private final long numProbeTimeouts;
+
+        private final long numProbeErrors;
+
+        private final long scanDurationP50;
+
+        private final long scanDurationMax;
+
+        private final long idResponseTimeP50;
+
+        private final long idResponseTimeP99;
+
+        private ScanSnapshot(AlertMetrics metrics) {
+            numScans = metrics.numScans.get();
+            numProbes = metrics.numProbes.get();
+            numProbesSkipped = metrics.numProbesSkipped.get();
+            numDevicesFound = metrics.numDevicesFound.get();
+            numProbeTimeouts = metrics.numProbeTimeouts.get();
+            numProbeErrors = metrics.numProbeErrors.get();
+            scanDurationP50 = metrics.scanDurations.getValueAtPercentile(50);
+            scanDurationMax = metrics.scanDurations.getMax();
+            idResponseTimeP50 = metrics.idResponseTimes.getValueAtPercentile(50);
+            idResponseTimeP99 = metrics.idResponseTimes.getValueAtPercentile(99);
+        }
+
+        public long getNumScans() {
+            return numScans;
+        }
+
+        public long getNumProbes() {
+            return numProbes;
+        }
+
+        public long getNumProbesSkipped() {
+            return numProbesSkipped;
+        }
+
+        public long getNumDevicesFound() {
+            return numDevicesFound;
+        }
+
+        public long getNumProbeTimeouts() {
+            return numProbeTimeouts;
+        }
+
+        public long getNumProbeErrors() {
+            return numProbeErrors;
+        }
+
+        public long getScanDurationP50() {
+            return scanDurationP50;
+        }
+
+        public long getScanDurationMax() {
+            return scanDurationMax;
+        }
+
+        public long getIdResponseTimeP50() {
+            return idResponseTimeP50;
+        }
+
+        public long getIdResponseTimeP99() {
+            return idResponseTimeP99;
+        }
+
+        @Override
+        public String toString() {
+            return "scans=" + numScans + ", probes=" + numProbes + ", skipped=" + numProbesSkipped
+                    + ", found=" + numDevicesFound
+                    + ", timeouts=" + numProbeTimeouts + ", errors=" + numProbeErrors
+                    + ", duration p50=" + scanDurationP50 + " max=" + scanDurationMax
+                    + " ms, id rtt p50=" + idResponseTimeP50 + " p99=" + idResponseTimeP99 + " ms";
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package de.sikora.androidapp_alertclient;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the neighbor table of the operating system, i.e. the hosts of the local networks that
+ * have recently exchanged packets with this host. A scan probes these hosts first, so that
+ * devices that are known to be alive are found at the start of the scan.
+ *
+ * On Linux the table is read from /proc/net/arp. Recent Android versions deny access to this
+ * file, in which case the table is empty and the scan probes the addresses in numeric order.
+ */
+public final class AlertNeighborTable {
+
+    // File listing the IPv4 neighbors on Linux
+    private static final File ARP_TABLE_FILE = new File("/proc/net/arp");
+
+    // Flag of an entry whose hardware address has been resolved
+    private static final int ATF_COM = 0x2;
+
+
+    private AlertNeighborTable() {
+    }
+
+    /**
+     * Returns the addresses of the neighbors whose hardware address has been resolved.
+     *
+     * @return Addresses in the order of the table, empty if the table cannot be read.
+     */
+    public static List<String> getNeighborAddresses() {
+        return readArpTable(ARP_TABLE_FILE);
+    }
+
+    /**
+     * Reads the resolved entries of a table in the format of /proc/net/arp:
+     *
+     * <pre>
+     * IP address       HW type     Flags       HW address            Mask     Device
+     * 192.168.17.23    0x1         0x2         24:0a:c4:9f:51:e8     *        wlan0
+     * </pre>
+     *
+     * @param tableFile File containing the table.
+     * @return Addresses in the order of the table, empty if the file cannot be read.
+     */
+    static List<String> readArpTable(File tableFile) {
+        List<String> addresses = new ArrayList<>();
+        BufferedReader reader = null;
+
+        try {
+            reader = new BufferedReader(new FileReader(tableFile));
+
+            // Skip the header line
+            String line = reader.readLine();
+
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.trim().split("\\s+");
+
+                if (fields.length < 4 || AlertAddressRange.parseAddress(fields[0]) < 0) {
+                    continue;
+                }
+
+                int flags;
+
+                try {
+                    flags = Integer.decode(fields[2]);
+                }
+                catch (NumberFormatException e) {
+                    continue;
+                }
+
+                // Skip incomplete entries, e.g. of hosts that have not answered
+                if ((flags & ATF_COM) != 0 && !fields[3].equals("00:00:00:00:00:00")) {
+                    addresses.add(fields[0]);
+                }
+            }
+        }
+        catch (IOException e) {
+            // Table not available or access denied
+        }
+        catch (SecurityException e) {
+            // Access denied
+        }
+        finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                }
+                catch (IOException e) {
+                    // Failed to close
+                }
+            }
+        }
+
+        return addresses;
+    }
+}
@@ -0,0 +1,60 @@
+package de.sikora.androidapp_alertclient;
+
+/**
+ * Values and encodings of the protocol spoken between alert clients and alert devices.
+ *
+ * Each value is a single byte. A client sends an alert level to set it, CMD_READ_REQUEST to
+ * read the current alert level, or CMD_ID_REQUEST to read the device id, which is answered
+ * with ID_NUM_BYTES bytes. A device sends its alert level whenever it changes or is read.
+ *
+ * This class does not depend on Android, so that it can be used by the benchmarks and the
+ * simulated devices as well.
+ */
+public final class AlertProtocol {
+
+    // Value that is sent to the server to read the current alert level
+    public static final int CMD_READ_REQUEST = 3;
+
+    // Value that is sent to the server to read the device id
+    public static final int CMD_ID_REQUEST = 4;
+
+    // Length of a device id in bytes
+    public static final int ID_NUM_BYTES = 6;
+
+
+    private AlertProtocol() {
+    }
+
+    /**
+     * Converts the id bytes received from an alert device into the id string.
+     *
+     * @param idBytes Buffer containing the id.
+     * @param offset  Position of the first id byte in the buffer.
+     * @return Id as hexadecimal string.
+     */
+    public static String decodeDeviceId(byte[] idBytes, int offset) {
+        long idLong = 0;
+
+        for (int i = 0; i < ID_NUM_BYTES; i++) {
+            int val = ((int) idBytes[offset + i]) & 0xFF;
+            idLong = (idLong << 8) + val;
+        }
+
+        return Long.toHexString(idLong);
+    }
+
+    /**
+     * Converts a device id into the bytes sent by an alert device in response to an id request.
+     * This is the inverse of <code>decodeDeviceId</code>.
+     *
+     * @param id      Id, only the lower ID_NUM_BYTES bytes are used.
+     * @param idBytes Buffer receiving the id.
+     * @param offset  Position of the first id byte in the buffer.
+     */
+    public static void encodeDeviceId(long id, byte[] idBytes, int offset) {
+        for (int i = ID_NUM_BYTES - 1; i >= 0; i--) {
+            idBytes[offset + i] = (byte) id;
+            id >>>= 8;
+        }
+    }
+}
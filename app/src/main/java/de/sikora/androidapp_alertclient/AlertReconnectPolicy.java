@@ -0,0 +1,224 @@
+package de.sikora.androidapp_alertclient;
+
+import java.util.Random;
+
+/**
+ * Decides when an AlertClientTcp object attempts to connect to its alert device.
+ *
+ * Failed attempts are retried with an exponentially growing delay. Each delay is varied
+ * randomly, so that many clients which lost their connections at the same time, e.g. when the
+ * access point has been restarted, do not reconnect in lockstep.
+ *
+ * After a number of failed attempts in a row the circuit of the device is opened: no attempts
+ * are made for a long time, so that a device that is switched off costs neither sockets nor
+ * CPU time. Afterwards a single attempt is made, which closes the circuit if it succeeds or
+ * opens it again otherwise.
+ */
+public class AlertReconnectPolicy {
+
+    /**
+     * State of the circuit of a device.
+     */
+    public enum CircuitState {
+        // Connection attempts are made with backoff
+        CLOSED,
+
+        // Too many attempts failed, no attempts are made until the open time has expired
+        OPEN,
+
+        // A single attempt is made after the open time has expired
+        HALF_OPEN
+    }
+
+    // Default time after which a connection attempt is aborted
+    private static final long TIME_CONNECT_TIMEOUT = 3000;
+
+    // Default delay after the first failed attempt, doubled after each further failure
+    private static final long TIME_BACKOFF_BASE = 1000;
+
+    // Default maximum delay between two attempts while the circuit is closed
+    private static final long TIME_BACKOFF_MAX = 60000;
+
+    // Default number of failed attempts in a row at which the circuit is opened
+    private static final int NUM_FAILURES_OPEN = 8;
+
+    // Default time for which the circuit stays open
+    private static final long TIME_CIRCUIT_OPEN = 300000;
+
+    // Maximum delay of the first attempt after an established connection has been lost
+    private static final long TIME_RECONNECT_SPREAD = 1000;
+
+    private volatile long connectTimeout = TIME_CONNECT_TIMEOUT;
+
+    private volatile long backoffBase = TIME_BACKOFF_BASE;
+
+    private volatile long backoffMax = TIME_BACKOFF_MAX;
+
+    private volatile int numFailuresOpen = NUM_FAILURES_OPEN;
+
+    private volatile long circuitOpenTime = TIME_CIRCUIT_OPEN;
+
+    // Number of failed attempts since the last successful connection
+    private int numFailures = 0;
+
+    // Current state of the circuit
+    private CircuitState circuitState = CircuitState.CLOSED;
+
+    // Point in time at which the next attempt may be made
+    private long nextAttemptTime = 0;
+
+    private final Random random = new Random();
+
+
+    /**
+     * Sets the time after which a connection attempt is aborted.
+     *
+     * @param timeout Timeout in ms.
+     */
+    public void setConnectTimeout(long timeout) {
+        connectTimeout = timeout;
+    }
+
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Sets the delays between failed connection attempts.
+     *
+     * @param baseDelay Delay after the first failure in ms.
+     * @param maxDelay  Maximum delay in ms.
+     */
+    public void setBackoff(long baseDelay, long maxDelay) {
+        if (baseDelay <= 0 || maxDelay < baseDelay) {
+            throw new IllegalArgumentException("Invalid backoff: " + baseDelay + ", " + maxDelay);
+        }
+
+        backoffBase = baseDelay;
+        backoffMax = maxDelay;
+    }
+
+    /**
+     * Sets when the circuit is opened and for how long.
+     *
+     * @param numFailures Number of failed attempts in a row at which the circuit is opened.
+     * @param openTime    Time in ms for which no attempts are made.
+     */
+    public void setCircuitBreaker(int numFailures, long openTime) {
+        numFailuresOpen = numFailures;
+        circuitOpenTime = openTime;
+    }
+
+    public synchronized CircuitState getCircuitState() {
+        return circuitState;
+    }
+
+    public synchronized int getNumFailures() {
+        return numFailures;
+    }
+
+    /**
+     * Returns the point in time at which the next connection attempt may be made.
+     *
+     * @return Time in ms.
+     */
+    public synchronized long getNextAttemptTime() {
+        return nextAttemptTime;
+    }
+
+    /**
+     * Blocks the calling thread until the next connection attempt may be made or the policy
+     * has been reset.
+     *
+     * @throws InterruptedException If the thread has been interrupted while waiting.
+     */
+    public synchronized void awaitNextAttempt() throws InterruptedException {
+        long delay;
+
+        while ((delay = nextAttemptTime - System.currentTimeMillis()) > 0) {
+            wait(delay);
+        }
+    }
+
+    /**
+     * Called before a connection attempt is made. An open circuit whose open time has expired
+     * becomes half-open.
+     *
+     * @param curTime Current time in ms.
+     */
+    public synchronized void onAttempt(long curTime) {
+        if (circuitState == CircuitState.OPEN && curTime >= nextAttemptTime) {
+            circuitState = CircuitState.HALF_OPEN;
+        }
+    }
+
+    /**
+     * Called when a connection has been established. Closes the circuit.
+     */
+    public synchronized void onConnected() {
+        numFailures = 0;
+        circuitState = CircuitState.CLOSED;
+        nextAttemptTime = 0;
+    }
+
+    /**
+     * Called when a connection attempt has failed.
+     *
+     * @param curTime Current time in ms.
+     * @return Point in time at which the next attempt may be made.
+     */
+    public synchronized long onConnectFailed(long curTime) {
+        numFailures += 1;
+
+        if (circuitState == CircuitState.HALF_OPEN || numFailures >= numFailuresOpen) {
+            circuitState = CircuitState.OPEN;
+            nextAttemptTime = curTime + spread(circuitOpenTime);
+        }
+        else {
+            // Double the delay with each failure, avoiding an overflow of the shift
+            int shift = Math.min(numFailures - 1, 30);
+            long delay = Math.min(backoffBase << shift, backoffMax);
+
+            nextAttemptTime = curTime + spread(delay);
+        }
+
+        return nextAttemptTime;
+    }
+
+    /**
+     * Called when an established connection has been lost. The next attempt is delayed by a
+     * short random time.
+     *
+     * @param curTime Current time in ms.
+     * @return Point in time at which the next attempt may be made.
+     */
+    public synchronized long onConnectionLost(long curTime) {
+        numFailures = 0;
+        circuitState = CircuitState.CLOSED;
+        nextAttemptTime = curTime + random.nextInt((int) TIME_RECONNECT_SPREAD + 1);
+
+        return nextAttemptTime;
+    }
+
+    /**
+     * Closes the circuit and allows an immediate attempt, e.g. after the device has been found
+     * by a scan or has been started by the user.
+     */
+    public synchronized void reset() {
+        numFailures = 0;
+        circuitState = CircuitState.CLOSED;
+        nextAttemptTime = 0;
+
+        // Wake up a thread waiting for the next attempt
+        notifyAll();
+    }
+
+    /**
+     * Returns a random delay between half and all of the specified delay.
+     */
+    private long spread(long delay) {
+        long half = delay / 2;
+
+        return half + (long) (random.nextDouble() * (delay - half));
+    }
+}
@@ -0,0 +1,273 @@
+package de.sikora.androidapp_alertclient;
+
+/**
+ * Remembers addresses at which a scan has not found an alert device, so that repeated scans
+ * skip them until their entry expires.
+ *
+ * How long an address is skipped depends on the probe result: a refused connection or a host
+ * that does not provide an id is known not to be an alert device, while a timeout may also be
+ * caused by a device that is temporarily unreachable.
+ *
+ * The entries are stored in primitive arrays using open addressing, so that thousands of
+ * addresses take a few hundred kilobytes and no objects are created per entry.
+ */
+public class AlertScanCache {
+
+    /**
+     * Result of a probe that did not detect an alert device.
+     */
+    public enum Result {
+        // The connection has been refused, i.e. the host does not offer the alert service
+        REFUSED,
+
+        // No connection has been established in time
+        TIMEOUT,
+
+        // The connection has been established, but the host has not provided an id
+        NO_ID
+    }
+
+    // Default maximum number of entries
+    public static final int MAX_ENTRIES_DEFAULT = 8192;
+
+    // Default time in ms for which refused addresses are skipped
+    private static final long TTL_REFUSED_DEFAULT = 10 * 60 * 1000;
+
+    // Default time in ms for which addresses that have timed out are skipped
+    private static final long TTL_TIMEOUT_DEFAULT = 2 * 60 * 1000;
+
+    // Default time in ms for which addresses without id are skipped
+    private static final long TTL_NO_ID_DEFAULT = 10 * 60 * 1000;
+
+    // Key of an unused slot, address 0.0.0.0 is never probed
+    private static final int EMPTY = 0;
+
+    // Maximum number of entries
+    private final int maxEntries;
+
+    // Addresses of the entries, EMPTY for unused slots
+    private final int[] addresses;
+
+    // Expiry times of the entries in ms
+    private final long[] expiryTimes;
+
+    // Probe results of the entries, ordinal of Result
+    private final byte[] results;
+
+    // Time in ms for which addresses are skipped, indexed by the ordinal of Result
+    private final long[] ttls = {TTL_REFUSED_DEFAULT, TTL_TIMEOUT_DEFAULT, TTL_NO_ID_DEFAULT};
+
+    // Number of used slots
+    private int numEntries = 0;
+
+
+    public AlertScanCache() {
+        this(MAX_ENTRIES_DEFAULT);
+    }
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxEntries Maximum number of entries. The arrays hold twice as many slots, so that
+     *                   lookups remain short when the cache is full.
+     */
+    public AlertScanCache(int maxEntries) {
+        int capacity = Integer.highestOneBit(Math.max(2, maxEntries) * 2 - 1) * 2;
+
+        this.maxEntries = maxEntries;
+
+        addresses = new int[capacity];
+        expiryTimes = new long[capacity];
+        results = new byte[capacity];
+    }
+
+    /**
+     * Sets the time for which addresses with the specified probe result are skipped. Applies to
+     * results recorded afterwards.
+     *
+     * @param result Probe result.
+     * @param ttl    Time in ms, 0 to not cache the result.
+     */
+    public synchronized void setTtl(Result result, long ttl) {
+        ttls[result.ordinal()] = ttl;
+    }
+
+    public synchronized long getTtl(Result result) {
+        return ttls[result.ordinal()];
+    }
+
+    /**
+     * Records that no alert device has been found at an address. If the cache is full and no
+     * entry has expired, the result is not recorded.
+     *
+     * @param address Address as unsigned 32 bit value, see AlertAddressRange.
+     * @param result  Probe result.
+     * @param curTime Current time in ms.
+     */
+    public synchronized void put(long address, Result result, long curTime) {
+        long ttl = ttls[result.ordinal()];
+
+        if (address <= 0 || ttl <= 0) {
+            return;
+        }
+
+        int slot = findSlot((int) address);
+
+        if (addresses[slot] == EMPTY) {
+            if (numEntries >= maxEntries) {
+                removeExpired(curTime);
+
+                if (numEntries >= maxEntries) {
+                    return;
+                }
+
+                // Slots may have moved while removing entries
+                slot = findSlot((int) address);
+            }
+
+            addresses[slot] = (int) address;
+            numEntries += 1;
+        }
+
+        expiryTimes[slot] = curTime + ttl;
+        results[slot] = (byte) result.ordinal();
+    }
+
+    /**
+     * Returns whether an address shall be skipped because it has been recorded and the entry
+     * has not expired yet.
+     *
+     * @param address Address as unsigned 32 bit value, see AlertAddressRange.
+     * @param curTime Current time in ms.
+     * @return True, if the address shall not be probed.
+     */
+    public synchronized boolean isSkipped(long address, long curTime) {
+        if (address <= 0) {
+            return false;
+        }
+
+        int slot = findSlot((int) address);
+
+        return addresses[slot] != EMPTY && curTime < expiryTimes[slot];
+    }
+
+    /**
+     * Returns the probe result recorded for an address.
+     *
+     * @param address Address as unsigned 32 bit value, see AlertAddressRange.
+     * @param curTime Current time in ms.
+     * @return Result or null if the address has not been recorded or its entry has expired.
+     */
+    public synchronized Result getResult(long address, long curTime) {
+        if (address <= 0) {
+            return null;
+        }
+
+        int slot = findSlot((int) address);
+
+        if (addresses[slot] == EMPTY || curTime >= expiryTimes[slot]) {
+            return null;
+        }
+
+        return Result.values()[results[slot]];
+    }
+
+    /**
+     * Removes the entry of an address, e.g. because an alert device has been found there.
+     *
+     * @param address Address as unsigned 32 bit value, see AlertAddressRange.
+     */
+    public synchronized void remove(long address) {
+        if (address <= 0) {
+            return;
+        }
+
+        int slot = findSlot((int) address);
+
+        if (addresses[slot] != EMPTY) {
+            removeSlot(slot);
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = EMPTY;
+        }
+
+        numEntries = 0;
+    }
+
+    public synchronized int size() {
+        return numEntries;
+    }
+
+    /**
+     * Removes all entries that have expired.
+     *
+     * @param curTime Current time in ms.
+     */
+    public synchronized void removeExpired(long curTime) {
+        int slot = 0;
+
+        while (slot < addresses.length) {
+            // Removing an entry may move a later entry into this slot, so check it again
+            if (addresses[slot] != EMPTY && curTime >= expiryTimes[slot]) {
+                removeSlot(slot);
+            }
+            else {
+                slot++;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot holding the address or, if it is not contained, the empty slot at which
+     * it would be inserted.
+     */
+    private int findSlot(int address) {
+        int mask = addresses.length - 1;
+        int slot = hash(address) & mask;
+
+        while (addresses[slot] != EMPTY && addresses[slot] != address) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Empties a slot and moves the following entries of the same probe sequence back, so that
+     * all entries remain reachable without tombstones.
+     */
+    private void removeSlot(int slot) {
+        int mask = addresses.length - 1;
+        int next = (slot + 1) & mask;
+
+        while (addresses[next] != EMPTY) {
+            int home = hash(addresses[next]) & mask;
+
+            // Move the entry if the emptied slot lies between its home slot and its slot
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                addresses[slot] = addresses[next];
+                expiryTimes[slot] = expiryTimes[next];
+                results[slot] = results[next];
+                slot = next;
+            }
+
+            next = (next + 1) & mask;
+        }
+
+        addresses[slot] = EMPTY;
+        numEntries -= 1;
+    }
+
+    private static int hash(int address) {
+        // Spread the host bits, which differ most between addresses of a network
+        int h = address * 0x9E3779B9;
+
+        return h ^ (h >>> 16);
+    }
+}
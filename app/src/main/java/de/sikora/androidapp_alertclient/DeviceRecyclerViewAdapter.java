@@ -130,6 +130,49 @@ public class DeviceRecyclerViewAdapter
         notifyDataSetChanged();
     }
 
+    /**
+     * Removes a device from the list. The selection is cleared if the device is selected.
+     *
+     * @param device Device to be removed.
+     */
+    public void removeDevice(AlertDeviceModel device) {
+        if (alertDeviceList.remove(device)) {
+            if (device == selectedDevice) {
+                selectedDevice = null;
+                selectedPos = -1;
+            }
+            else if (selectedDevice != null) {
+                selectedPos = alertDeviceList.indexOf(selectedDevice);
+            }
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Replaces a device in the list by another one at the same position. The device is added if
+     * the replaced device is not in the list. The selection is cleared if the replaced device is
+     * selected.
+     *
+     * @param previous Device to be replaced.
+     * @param current  Device that replaces the previous one.
+     */
+    public void replaceDevice(AlertDeviceModel previous, AlertDeviceModel current) {
+        int pos = alertDeviceList.indexOf(previous);
+
+        if (pos >= 0) {
+            alertDeviceList.set(pos, current);
+
+            if (previous == selectedDevice) {
+                selectedDevice = null;
+                selectedPos = -1;
+            }
+            notifyItemChanged(pos);
+        }
+        else {
+            addDevice(current);
+        }
+    }
+
     public void update() {
         notifyDataSetChanged();
     }
@@ -12,7 +12,7 @@ import android.widget.ToggleButton;
 
 import com.google.android.material.textfield.TextInputEditText;
 
-import java.util.Vector;
+import java.util.List;
 
 
 /**
@@ -20,6 +20,7 @@ import java.util.Vector;
  */
 public class DeviceScanActivity extends AppCompatActivity
         implements AlertDeviceScanTcp.AlertDeviceScanListener,
+        AlertDeviceScanDiff.DiffListener,
         DeviceListFragment.ListInteractionListener {
 
     // Tag for logging
@@ -96,8 +97,8 @@ public class DeviceScanActivity extends AppCompatActivity
     }
 
     private void initializeDeviceList() {
-        // Initialize list with devices from pool
-        Vector<AlertDeviceModel> deviceList = AlertClientPool.getInstance().getDeviceList();
+        // Initialize list with registered devices and devices found by previous scans
+        List<AlertDeviceModel> deviceList = AlertClientPool.getInstance().getKnownDevices();
 
         for (AlertDeviceModel device : deviceList) {
             deviceViewAdapter.addDevice(device);
@@ -110,13 +111,8 @@ public class DeviceScanActivity extends AppCompatActivity
 
         disableDeviceEdit();
 
-        // Retain only registered devices in the list
-        deviceViewAdapter.clear();
-
-        initializeDeviceList();
-
-        // Start the scan process in the background
-        AlertClientPool.getInstance().startScanAndListen(this);
+        // Start the scan process in the background, the list is updated with the differences
+        AlertClientPool.getInstance().startIncrementalScanAndListen(this);
     }
 
     private void enableScan() {
@@ -134,26 +130,54 @@ public class DeviceScanActivity extends AppCompatActivity
             TextInputEditText deviceNameInput = findViewById(R.id.input_device_name);
             selectedDevice.setName(deviceNameInput.getText().toString());
 
-            // Add device to alert client pool
-            AlertClientPool.getInstance().addDevice(selectedDevice);
-
-            removeDeviceButton.setEnabled(true);
-
-            // Update list
-            deviceViewAdapter.update();
+            // Add device to alert client pool, which stores it in the registry file
+            final AlertDeviceModel device = selectedDevice;
+            final AlertClientPool alertClientPool = AlertClientPool.getInstance();
+
+            alertClientPool.getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    alertClientPool.addDevice(device);
+
+                    runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (device == selectedDevice) {
+                                removeDeviceButton.setEnabled(true);
+                            }
+
+                            // Update list
+                            deviceViewAdapter.update();
+                        }
+                    });
+                }
+            });
         }
     }
 
     private void unregisterSelectedDevice() {
         if (selectedDevice != null) {
             if (selectedDevice.isRegistered()) {
-                // Remove device from alert client pool
-                AlertClientPool.getInstance().removeDeviceByAddr(selectedDevice);
+                // Remove device from alert client pool, which removes it from the registry file
+                final AlertDeviceModel device = selectedDevice;
+                final AlertClientPool alertClientPool = AlertClientPool.getInstance();
 
                 removeDeviceButton.setEnabled(false);
 
-                // Update list
-                deviceViewAdapter.update();
+                alertClientPool.getExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        alertClientPool.removeDeviceByAddr(device);
+
+                        runOnUiThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                // Update list
+                                deviceViewAdapter.update();
+                            }
+                        });
+                    }
+                });
             }
         }
     }
@@ -196,6 +220,65 @@ public class DeviceScanActivity extends AppCompatActivity
         });
     }
 
+    /**
+     * Called from the background scan process when a device has been found that was not known
+     * before.
+     * @param device
+     */
+    @Override
+    public void onDeviceAdded(final AlertDeviceModel device) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                deviceViewAdapter.addDevice(device);
+            }
+        });
+    }
+
+    /**
+     * Called from the background scan process when a known device has not been found.
+     * Registered devices are kept in the list.
+     * @param device
+     */
+    @Override
+    public void onDeviceRemoved(final AlertDeviceModel device) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (!device.isRegistered()) {
+                    if (device == selectedDevice) {
+                        disableDeviceEdit();
+                    }
+                    deviceViewAdapter.removeDevice(device);
+                }
+            }
+        });
+    }
+
+    /**
+     * Called from the background scan process when a known device has been found with another
+     * address or id. Registered devices are kept in the list next to the found device.
+     * @param previous
+     * @param current
+     */
+    @Override
+    public void onDeviceChanged(final AlertDeviceModel previous, final AlertDeviceModel current) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (previous.isRegistered()) {
+                    deviceViewAdapter.addDevice(current);
+                }
+                else {
+                    if (previous == selectedDevice) {
+                        disableDeviceEdit();
+                    }
+                    deviceViewAdapter.replaceDevice(previous, current);
+                }
+            }
+        });
+    }
+
     /**
      * Called from the background scan process when it is finished.
      */
@@ -6,17 +6,23 @@ import android.os.Bundle;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.fragment.app.Fragment;
 import androidx.appcompat.widget.Toolbar;
 
 import android.view.View;
 import android.view.Menu;
 import android.view.MenuItem;
 
+import java.io.File;
+
 /**
  * Configures the user interface of the alert client app after it has been launched.
  */
 public class MainActivity extends AppCompatActivity {
 
+    // Name of the file in which the registered devices are stored
+    private static final String DEVICE_REGISTRY_FILE = "alert_devices.dat";
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -32,6 +38,43 @@ public class MainActivity extends AppCompatActivity {
                 onFabClick(view);
             }
         });
+
+        // Restore the registered devices and connect to them without scanning the network.
+        // The registry file is read in the background in order not to block the UI thread. The
+        // fragment, which may have started meanwhile, shows the restored devices afterwards.
+        final AlertClientPool alertClientPool = AlertClientPool.getInstance();
+        final File registryFile = new File(getFilesDir(), DEVICE_REGISTRY_FILE);
+
+        alertClientPool.getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                alertClientPool.openRegistry(registryFile);
+                alertClientPool.startAllClients();
+
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        onDevicesRestored();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Called on the UI thread when the registered devices have been restored.
+     */
+    private void onDevicesRestored() {
+        if (isDestroyed()) {
+            return;
+        }
+
+        Fragment fragment = getSupportFragmentManager()
+                .findFragmentById(R.id.fragment_alert_client);
+
+        if (fragment instanceof AlertClientFragment) {
+            ((AlertClientFragment) fragment).onDevicesRestored();
+        }
     }
 
     @Override
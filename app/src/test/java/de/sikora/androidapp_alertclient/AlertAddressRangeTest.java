@@ -0,0 +1,214 @@
+package de.sikora.androidapp_alertclient;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the creation, merging, and splitting of AlertAddressRange objects.
+ */
+public class AlertAddressRangeTest {
+
+    private static long address(String addressStr) {
+        return AlertAddressRange.parseAddress(addressStr);
+    }
+
+    private static AlertAddressRange range(String first, String last) {
+        return new AlertAddressRange(address(first), address(last));
+    }
+
+    private static InetAddress inetAddress(String addressStr) throws UnknownHostException {
+        // Literal addresses are not resolved
+        return InetAddress.getByName(addressStr);
+    }
+
+    @Test
+    public void parsesAndFormatsAddresses() {
+        assertEquals(0xC0A81102L, address("192.168.17.2"));
+        assertEquals(0xFFFFFFFFL, address("255.255.255.255"));
+        assertEquals("192.168.17.2", AlertAddressRange.formatAddress(0xC0A81102L));
+    }
+
+    @Test
+    public void rejectsInvalidAddresses() {
+        assertEquals(-1, address("192.168.17"));
+        assertEquals(-1, address("192.168.17.256"));
+        assertEquals(-1, address("192.168..2"));
+        assertEquals(-1, address("192.168.17.2.1"));
+        assertEquals(-1, address("fe80::1"));
+        assertEquals(-1, address(""));
+    }
+
+    @Test
+    public void cidrExcludesNetworkAndBroadcastAddress() {
+        AlertAddressRange range = AlertAddressRange.fromCidr(address("192.168.17.23"), 24);
+
+        assertEquals(range("192.168.17.1", "192.168.17.254"), range);
+        assertEquals(254, range.size());
+    }
+
+    @Test
+    public void cidrWithPrefixLength0CoversAllHostAddresses() {
+        AlertAddressRange range = AlertAddressRange.fromCidr(address("10.1.2.3"), 0);
+
+        assertEquals(range("0.0.0.1", "255.255.255.254"), range);
+    }
+
+    @Test
+    public void cidrWithPrefixLength32IsSingleAddress() {
+        AlertAddressRange range = AlertAddressRange.fromCidr(address("10.1.2.3"), 32);
+
+        assertEquals(range("10.1.2.3", "10.1.2.3"), range);
+        assertEquals(1, range.size());
+    }
+
+    @Test
+    public void cidrWithPrefixLength31KeepsBothAddresses() {
+        AlertAddressRange range = AlertAddressRange.fromCidr(address("10.1.2.3"), 31);
+
+        assertEquals(range("10.1.2.2", "10.1.2.3"), range);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsReversedRange() {
+        range("10.0.0.2", "10.0.0.1");
+    }
+
+    @Test
+    public void containsOnlyAddressesOfRange() {
+        AlertAddressRange range = range("10.0.0.10", "10.0.0.20");
+
+        assertTrue(range.contains("10.0.0.10"));
+        assertTrue(range.contains("10.0.0.20"));
+        assertFalse(range.contains("10.0.0.21"));
+        assertFalse(range.contains("no address"));
+        assertEquals("10.0.0.15", range.getAddress(5));
+    }
+
+    @Test
+    public void mergesOverlappingAndAdjacentRanges() {
+        List<AlertAddressRange> merged = AlertAddressRange.merge(Arrays.asList(
+                range("10.0.1.0", "10.0.1.255"),
+                range("10.0.0.0", "10.0.0.255"),
+                range("10.0.1.128", "10.0.2.10"),
+                range("10.0.5.0", "10.0.5.0")));
+
+        assertEquals(Arrays.asList(range("10.0.0.0", "10.0.2.10"), range("10.0.5.0", "10.0.5.0")),
+                merged);
+    }
+
+    @Test
+    public void mergeKeepsRangeContainedInAnother() {
+        List<AlertAddressRange> merged = AlertAddressRange.merge(Arrays.asList(
+                range("10.0.0.0", "10.0.0.255"),
+                range("10.0.0.10", "10.0.0.20")));
+
+        assertEquals(Collections.singletonList(range("10.0.0.0", "10.0.0.255")), merged);
+    }
+
+    @Test
+    public void mergeHandlesEndOfAddressSpace() {
+        List<AlertAddressRange> merged = AlertAddressRange.merge(Arrays.asList(
+                range("255.255.255.0", "255.255.255.255"),
+                range("255.255.254.0", "255.255.254.255")));
+
+        assertEquals(Collections.singletonList(range("255.255.254.0", "255.255.255.255")),
+                merged);
+    }
+
+    @Test
+    public void splitCoversEachAddressOnce() {
+        List<AlertAddressRange> ranges = Arrays.asList(
+                range("10.0.0.1", "10.0.3.254"),
+                range("192.168.17.1", "192.168.17.254"));
+
+        List<AlertAddressRange> shards = AlertAddressRange.split(ranges, 8, 64);
+
+        // Shards are contiguous and in the order of the ranges
+        long numAddresses = 0;
+
+        for (AlertAddressRange shard : shards) {
+            numAddresses += shard.size();
+        }
+
+        assertEquals(ranges.get(0).size() + ranges.get(1).size(), numAddresses);
+        assertEquals(ranges, AlertAddressRange.merge(shards));
+        assertTrue(shards.size() <= 8);
+    }
+
+    @Test
+    public void splitKeepsShardsAboveMinimumSize() {
+        List<AlertAddressRange> shards = AlertAddressRange.split(
+                Collections.singletonList(range("10.0.0.1", "10.0.0.254")), 16, 64);
+
+        assertEquals(4, shards.size());
+
+        for (AlertAddressRange shard : shards) {
+            assertTrue(shard.size() >= 63);
+        }
+    }
+
+    @Test
+    public void splitKeepsAtLeastOneShardPerRange() {
+        List<AlertAddressRange> ranges = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            ranges.add(range("10.0." + i + ".1", "10.0." + i + ".10"));
+        }
+
+        assertEquals(ranges, AlertAddressRange.split(ranges, 2, 64));
+    }
+
+    @Test
+    public void splitOfNoRangesIsEmpty() {
+        List<AlertAddressRange> ranges = Collections.emptyList();
+
+        assertTrue(AlertAddressRange.split(ranges, 4, 64).isEmpty());
+    }
+
+    @Test
+    public void privateSubnetsOfWifiAndEthernetAreLocal() throws UnknownHostException {
+        assertTrue(AlertAddressRange.isLocalSubnet("wlan0", false,
+                inetAddress("192.168.17.23"), inetAddress("192.168.17.255")));
+        assertTrue(AlertAddressRange.isLocalSubnet("eth0", false,
+                inetAddress("10.1.2.3"), inetAddress("10.1.255.255")));
+        assertTrue(AlertAddressRange.isLocalSubnet("wlan1", false,
+                inetAddress("172.20.0.5"), inetAddress("172.20.0.255")));
+    }
+
+    @Test
+    public void mobileDataInterfacesAreNotLocal() throws UnknownHostException {
+        for (String name : new String[]{"rmnet_data0", "ccmni0", "pdp0", "clat4", "v4-rmnet0"}) {
+            assertFalse(name, AlertAddressRange.isLocalSubnet(name, false,
+                    inetAddress("10.64.12.7"), inetAddress("10.64.12.255")));
+        }
+    }
+
+    @Test
+    public void subnetsWithoutBroadcastAreNotLocal() throws UnknownHostException {
+        // Point-to-point links, e.g. VPNs, and interfaces without broadcast address
+        assertFalse(AlertAddressRange.isLocalSubnet("tun0", true,
+                inetAddress("10.8.0.2"), inetAddress("10.8.0.255")));
+        assertFalse(AlertAddressRange.isLocalSubnet("wlan0", false,
+                inetAddress("10.8.0.2"), null));
+    }
+
+    @Test
+    public void publicAndIpv6AddressesAreNotLocal() throws UnknownHostException {
+        assertFalse(AlertAddressRange.isLocalSubnet("eth0", false,
+                inetAddress("100.64.0.7"), inetAddress("100.64.0.255")));
+        assertFalse(AlertAddressRange.isLocalSubnet("eth0", false,
+                inetAddress("8.8.8.8"), inetAddress("8.8.8.255")));
+        assertFalse(AlertAddressRange.isLocalSubnet("wlan0", false,
+                inetAddress("fd00::17"), inetAddress("192.168.17.255")));
+    }
+}
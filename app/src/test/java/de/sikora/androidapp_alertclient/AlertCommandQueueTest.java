@@ -0,0 +1,190 @@
+package de.sikora.androidapp_alertclient;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the ring buffer of AlertCommandQueue, in particular across the wrap-around of the
+ * slot positions.
+ */
+public class AlertCommandQueueTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCapacityThatIsNoPowerOfTwo() {
+        new AlertCommandQueue(6, AlertCommandQueue.OverflowPolicy.DROP_OLDEST);
+    }
+
+    @Test
+    public void emptyQueueReturnsEmpty() {
+        AlertCommandQueue queue = new AlertCommandQueue(4,
+                AlertCommandQueue.OverflowPolicy.DROP_OLDEST);
+
+        assertTrue(queue.isEmpty());
+        assertEquals(AlertCommandQueue.EMPTY, queue.poll());
+    }
+
+    @Test
+    public void keepsOrderAcrossWrapAround() {
+        AlertCommandQueue queue = new AlertCommandQueue(4,
+                AlertCommandQueue.OverflowPolicy.DROP_NEWEST);
+
+        // Move the positions around the ring several times with varying fill levels
+        int nextAdded = 0;
+        int nextTaken = 0;
+
+        for (int round = 0; round < 50; round++) {
+            int numAdded = round % 4 + 1;
+
+            for (int i = 0; i < numAdded; i++) {
+                assertTrue(queue.offer(nextAdded++));
+            }
+
+            assertEquals(numAdded, queue.size());
+
+            for (int i = 0; i < numAdded; i++) {
+                assertEquals(nextTaken++, queue.poll());
+            }
+
+            assertEquals(AlertCommandQueue.EMPTY, queue.poll());
+        }
+
+        assertEquals(0, queue.getDropCount());
+    }
+
+    @Test
+    public void fullQueueRejectsOfferAfterWrapAround() {
+        AlertCommandQueue queue = new AlertCommandQueue(4,
+                AlertCommandQueue.OverflowPolicy.DROP_NEWEST);
+
+        // Advance the positions so that the full queue spans the end of the ring
+        for (int i = 0; i < 3; i++) {
+            queue.offer(i);
+            queue.poll();
+        }
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(10 + i));
+        }
+
+        assertFalse(queue.offer(14));
+        assertEquals(4, queue.size());
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(10 + i, queue.poll());
+        }
+    }
+
+    @Test
+    public void dropOldestKeepsNewestValues() {
+        AlertCommandQueue queue = new AlertCommandQueue(4,
+                AlertCommandQueue.OverflowPolicy.DROP_OLDEST);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.add(i));
+        }
+
+        assertEquals(6, queue.getDropCount());
+
+        for (int i = 6; i < 10; i++) {
+            assertEquals(i, queue.poll());
+        }
+
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void dropNewestKeepsOldestValues() {
+        AlertCommandQueue queue = new AlertCommandQueue(4,
+                AlertCommandQueue.OverflowPolicy.DROP_NEWEST);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i < 4, queue.add(i));
+        }
+
+        assertEquals(6, queue.getDropCount());
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, queue.poll());
+        }
+    }
+
+    @Test
+    public void clearEmptiesQueue() {
+        AlertCommandQueue queue = new AlertCommandQueue(4,
+                AlertCommandQueue.OverflowPolicy.DROP_OLDEST);
+
+        queue.add(1);
+        queue.add(2);
+        queue.clear();
+
+        assertTrue(queue.isEmpty());
+
+        // The queue remains usable after clearing
+        queue.add(3);
+        assertEquals(3, queue.poll());
+    }
+
+    @Test
+    public void concurrentProducersAndConsumerLoseNoValue() throws InterruptedException {
+        final AlertCommandQueue queue = new AlertCommandQueue(8,
+                AlertCommandQueue.OverflowPolicy.DROP_NEWEST);
+        final int numProducers = 4;
+        final int numValuesPerProducer = 5000;
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        Thread[] producers = new Thread[numProducers];
+
+        for (int p = 0; p < numProducers; p++) {
+            producers[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startSignal.await();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+
+                    for (int i = 1; i <= numValuesPerProducer; i++) {
+                        while (!queue.offer(i)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            producers[p].start();
+        }
+
+        startSignal.countDown();
+
+        // Every value must be taken exactly once
+        long sum = 0;
+        int numTaken = 0;
+
+        while (numTaken < numProducers * numValuesPerProducer) {
+            int value = queue.poll();
+
+            if (value != AlertCommandQueue.EMPTY) {
+                sum += value;
+                numTaken++;
+            }
+            else {
+                Thread.yield();
+            }
+        }
+
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        long expectedSum = (long) numProducers * numValuesPerProducer
+                * (numValuesPerProducer + 1) / 2;
+
+        assertEquals(expectedSum, sum);
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,129 @@
+package de.sikora.androidapp_alertclient;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the lookups and snapshots of AlertDeviceIndex.
+ */
+public class AlertDeviceIndexTest {
+
+    private static AlertDeviceModel createDevice(String address, String id) {
+        AlertDeviceModel device = new AlertDeviceModel();
+        device.setAddress(address);
+        device.setId(id);
+        return device;
+    }
+
+    @Test
+    public void findsDevicesByAddressAndId() {
+        AlertDeviceIndex<String> index = new AlertDeviceIndex<>();
+        AlertDeviceModel device = createDevice("10.0.0.1", "A1");
+
+        index.put(device, "client1");
+
+        assertEquals("client1", index.getByAddress("10.0.0.1"));
+        assertEquals("client1", index.getById("A1"));
+        assertSame(device, index.getDeviceByAddress("10.0.0.1"));
+        assertSame(device, index.getDeviceById("A1"));
+        assertNull(index.getByAddress("10.0.0.2"));
+        assertNull(index.getById("B2"));
+    }
+
+    @Test
+    public void deviceWithoutIdIsFoundByAddressOnly() {
+        AlertDeviceIndex<String> index = new AlertDeviceIndex<>();
+
+        index.put(createDevice("10.0.0.1", null), "client1");
+
+        assertEquals("client1", index.getByAddress("10.0.0.1"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void putReplacesDeviceWithSameAddress() {
+        AlertDeviceIndex<String> index = new AlertDeviceIndex<>();
+
+        index.put(createDevice("10.0.0.1", "A1"), "client1");
+
+        assertEquals("client1", index.put(createDevice("10.0.0.1", "A2"), "client2"));
+        assertEquals("client2", index.getByAddress("10.0.0.1"));
+        assertEquals("client2", index.getById("A2"));
+        assertNull(index.getById("A1"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void removingDeviceKeepsIdOfMovedDevice() {
+        AlertDeviceIndex<String> index = new AlertDeviceIndex<>();
+
+        // The device with id A1 has moved to another address
+        index.put(createDevice("10.0.0.1", "A1"), "client1");
+        index.put(createDevice("10.0.0.2", "A1"), "client2");
+
+        assertEquals("client1", index.removeByAddress("10.0.0.1"));
+        assertEquals("client2", index.getById("A1"));
+        assertNull(index.removeByAddress("10.0.0.1"));
+    }
+
+    @Test
+    public void snapshotsKeepInsertionOrder() {
+        AlertDeviceIndex<String> index = new AlertDeviceIndex<>();
+        AlertDeviceModel device1 = createDevice("10.0.0.3", "C");
+        AlertDeviceModel device2 = createDevice("10.0.0.1", "A");
+        AlertDeviceModel device3 = createDevice("10.0.0.2", "B");
+
+        index.put(device1, "client1");
+        index.put(device2, "client2");
+        index.put(device3, "client3");
+        index.removeByAddress("10.0.0.1");
+
+        assertEquals(Arrays.asList(device1, device3), index.getDevices());
+        assertEquals(Arrays.asList("client1", "client3"), index.getValues());
+    }
+
+    @Test
+    public void snapshotIsReusedUntilModified() {
+        AlertDeviceIndex<String> index = new AlertDeviceIndex<>();
+
+        index.put(createDevice("10.0.0.1", "A1"), "client1");
+
+        List<String> values = index.getValues();
+
+        assertSame(values, index.getValues());
+
+        index.put(createDevice("10.0.0.2", "A2"), "client2");
+
+        // The earlier snapshot is not changed by the modification
+        assertEquals(1, values.size());
+        assertEquals(2, index.getValues().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotIsUnmodifiable() {
+        AlertDeviceIndex<String> index = new AlertDeviceIndex<>();
+
+        index.put(createDevice("10.0.0.1", "A1"), "client1");
+        index.getValues().clear();
+    }
+
+    @Test
+    public void clearReturnsRemovedValues() {
+        AlertDeviceIndex<String> index = new AlertDeviceIndex<>();
+
+        index.put(createDevice("10.0.0.1", "A1"), "client1");
+        index.put(createDevice("10.0.0.2", "A2"), "client2");
+
+        assertEquals(Arrays.asList("client1", "client2"), index.clear());
+        assertEquals(0, index.size());
+        assertTrue(index.getDevices().isEmpty());
+        assertNull(index.getById("A1"));
+    }
+}
@@ -0,0 +1,137 @@
+package de.sikora.androidapp_alertclient;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the acknowledgement of an AlertFleetCommand. The clients are not connected: the
+ * reports of the devices and the writes of the clients are simulated.
+ */
+public class AlertFleetCommandTest {
+
+    // Time within which the devices must acknowledge, long enough not to expire in a test
+    private static final long TIMEOUT = 60000;
+
+    private static AlertDeviceModel createDevice(String address, int alertLevel) {
+        AlertDeviceModel device = new AlertDeviceModel();
+        device.setAddress(address);
+        device.setAlertLevel(alertLevel);
+        return device;
+    }
+
+    /**
+     * Creates a client that receives the levels set on the device, as a running session does.
+     */
+    private static AlertClientTcp createClient(AlertDeviceModel device) {
+        AlertClientTcp client = new AlertClientTcp(device);
+        device.addListener(client);
+        return client;
+    }
+
+    /**
+     * Lets the client write the values that have been handed to it, as the session does.
+     */
+    private static void writeTxValues(AlertClientTcp client) {
+        while (client.takeTxValue(System.currentTimeMillis(), "test") >= 0) {
+            // Values are written by the socket
+        }
+
+        client.onTxWritten();
+    }
+
+    /**
+     * Lets the client forward the level the device sends to it.
+     */
+    private static void reportLevel(AlertDeviceModel device, AlertClientTcp client, int level) {
+        device.setAlertLevelAndNotify(level, client);
+    }
+
+    @Test
+    public void deviceAtLevelDoesNotAcknowledgeBeforeWrite() {
+        AlertDeviceModel device = createDevice("10.0.0.1", 2);
+        AlertClientTcp client = createClient(device);
+        AlertFleetCommand command = new AlertFleetCommand(2, null);
+
+        command.addDevice(device, client);
+        command.start(TIMEOUT);
+
+        // Response to a keep-alive read request that has been in flight
+        reportLevel(device, client, 2);
+
+        assertFalse(command.isFinished());
+        assertEquals(1, command.getNumDevices(AlertFleetCommand.Status.PENDING));
+
+        writeTxValues(client);
+        reportLevel(device, client, 2);
+
+        assertTrue(command.isFinished());
+        assertTrue(command.isSuccessful());
+    }
+
+    @Test
+    public void writeWithoutLevelDoesNotCount() {
+        AlertDeviceModel device = createDevice("10.0.0.1", 1);
+        AlertClientTcp client = createClient(device);
+
+        writeTxValues(client);
+
+        assertEquals(0, client.getNumLevelWrites());
+
+        device.setAlertLevelAndNotify(2, null);
+        writeTxValues(client);
+
+        assertEquals(1, client.getNumLevelWrites());
+    }
+
+    @Test
+    public void otherLevelDoesNotAcknowledge() {
+        AlertDeviceModel device = createDevice("10.0.0.1", 0);
+        AlertClientTcp client = createClient(device);
+        AlertFleetCommand command = new AlertFleetCommand(2, null);
+
+        command.addDevice(device, client);
+        command.start(TIMEOUT);
+
+        writeTxValues(client);
+        reportLevel(device, client, 1);
+
+        assertFalse(command.isFinished());
+
+        reportLevel(device, client, 2);
+
+        assertTrue(command.isSuccessful());
+    }
+
+    @Test
+    public void levelSetByOtherSourceDoesNotAcknowledge() {
+        AlertDeviceModel device = createDevice("10.0.0.1", 0);
+        AlertClientTcp client = createClient(device);
+        AlertFleetCommand command = new AlertFleetCommand(2, null);
+
+        command.addDevice(device, client);
+        command.start(TIMEOUT);
+
+        writeTxValues(client);
+
+        // Level set locally, e.g. by the user interface, instead of reported by the device
+        device.setAlertLevelAndNotify(2, null);
+
+        assertFalse(command.isFinished());
+    }
+
+    @Test
+    public void deviceNotInPoolFailsImmediately() throws InterruptedException {
+        AlertDeviceModel device = createDevice("10.0.0.1", 0);
+        AlertFleetCommand command = new AlertFleetCommand(2, null);
+
+        command.addFailedDevice(device, AlertFleetCommand.Status.NOT_IN_POOL);
+        command.start(TIMEOUT);
+
+        assertTrue(command.isFinished());
+        assertEquals(AlertFleetCommand.Status.NOT_IN_POOL,
+                command.awaitResults().get(0).getStatus());
+    }
+}
@@ -0,0 +1,145 @@
+package de.sikora.androidapp_alertclient;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the timer wheel of AlertKeepAliveScheduler, driven by a simulated clock.
+ */
+public class AlertKeepAliveSchedulerTest {
+
+    // Start time of the simulated clock
+    private static final long TIME_START = 1000000000L;
+
+    // Duration of one tick of the wheel
+    private static final long TIME_TICK = 100;
+
+    /**
+     * Client that reports a fixed due time and records when its timer expires.
+     */
+    private static class TestClient extends AlertClientTcp {
+
+        private final long dueTime;
+
+        private long expiryTime = -1;
+
+        private int numExpiries = 0;
+
+        TestClient(String address, long dueTime) {
+            super(createDevice(address));
+            this.dueTime = dueTime;
+        }
+
+        private static AlertDeviceModel createDevice(String address) {
+            AlertDeviceModel device = new AlertDeviceModel();
+            device.setAddress(address);
+            return device;
+        }
+
+        @Override
+        long getKeepAliveDue() {
+            return dueTime;
+        }
+
+        @Override
+        long onKeepAliveTimer(long curTime) {
+            expiryTime = curTime;
+            numExpiries += 1;
+
+            // Stop the timer
+            return -1;
+        }
+    }
+
+    /**
+     * Advances the simulated clock tick by tick until the client's timer has expired.
+     */
+    private static long runUntilExpired(AlertKeepAliveScheduler scheduler, TestClient client,
+                                        long curTime, long timeMax) {
+        while (client.numExpiries == 0 && curTime < timeMax) {
+            curTime += TIME_TICK;
+            scheduler.advance(curTime);
+        }
+
+        return client.expiryTime;
+    }
+
+    @Test
+    public void expiresAtDueTime() {
+        AlertKeepAliveScheduler scheduler = new AlertKeepAliveScheduler(TIME_START);
+        TestClient client = new TestClient("10.0.0.1", TIME_START + 500);
+
+        scheduler.schedule(client);
+        scheduler.advance(TIME_START);
+
+        long expiryTime = runUntilExpired(scheduler, client, TIME_START, TIME_START + 60000);
+
+        assertTrue(expiryTime >= TIME_START + 500);
+        assertTrue(expiryTime <= TIME_START + 500 + TIME_TICK);
+    }
+
+    @Test
+    public void expiresAtDueTimeAfterIdlePeriod() {
+        AlertKeepAliveScheduler scheduler = new AlertKeepAliveScheduler(TIME_START);
+
+        // The wheel has not been advanced for a minute, i.e. more than one rotation
+        long curTime = TIME_START + 60000;
+        TestClient client = new TestClient("10.0.0.1", curTime + 500);
+
+        scheduler.schedule(client);
+        scheduler.advance(curTime);
+
+        long expiryTime = runUntilExpired(scheduler, client, curTime, curTime + 60000);
+
+        assertTrue(expiryTime >= curTime + 500);
+        assertTrue(expiryTime <= curTime + 500 + TIME_TICK);
+    }
+
+    @Test
+    public void expiresAfterSeveralRotations() {
+        AlertKeepAliveScheduler scheduler = new AlertKeepAliveScheduler(TIME_START);
+
+        // Due after more than two rotations of 256 ticks
+        TestClient client = new TestClient("10.0.0.1", TIME_START + 60000);
+
+        scheduler.schedule(client);
+        scheduler.advance(TIME_START);
+
+        long expiryTime = runUntilExpired(scheduler, client, TIME_START, TIME_START + 120000);
+
+        assertTrue(expiryTime >= TIME_START + 60000);
+        assertTrue(expiryTime <= TIME_START + 60000 + TIME_TICK);
+    }
+
+    @Test
+    public void overdueTimerExpiresInNextTick() {
+        AlertKeepAliveScheduler scheduler = new AlertKeepAliveScheduler(TIME_START);
+        TestClient client = new TestClient("10.0.0.1", TIME_START - 5000);
+
+        scheduler.schedule(client);
+        scheduler.advance(TIME_START);
+
+        assertEquals(0, client.numExpiries);
+
+        scheduler.advance(TIME_START + TIME_TICK);
+
+        assertEquals(1, client.numExpiries);
+    }
+
+    @Test
+    public void clientScheduledTwiceExpiresOnce() {
+        AlertKeepAliveScheduler scheduler = new AlertKeepAliveScheduler(TIME_START);
+        TestClient client = new TestClient("10.0.0.1", TIME_START + 300);
+
+        scheduler.schedule(client);
+        scheduler.schedule(client);
+        scheduler.advance(TIME_START);
+
+        runUntilExpired(scheduler, client, TIME_START, TIME_START + 60000);
+        scheduler.advance(TIME_START + 10000);
+
+        assertEquals(1, client.numExpiries);
+    }
+}
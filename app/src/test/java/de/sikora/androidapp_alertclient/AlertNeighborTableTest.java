@@ -0,0 +1,102 @@
+package de.sikora.androidapp_alertclient;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of reading a neighbor table in the format of /proc/net/arp.
+ */
+public class AlertNeighborTableTest {
+
+    // Header line of the table
+    private static final String HEADER =
+            "IP address       HW type     Flags       HW address            Mask     Device";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File writeTable(String... lines) throws IOException {
+        File tableFile = folder.newFile("arp");
+        Writer writer = new FileWriter(tableFile);
+
+        try {
+            writer.write(HEADER + "\n");
+
+            for (String line : lines) {
+                writer.write(line + "\n");
+            }
+        }
+        finally {
+            writer.close();
+        }
+
+        return tableFile;
+    }
+
+    @Test
+    public void returnsResolvedEntriesInTableOrder() throws IOException {
+        File tableFile = writeTable(
+                "192.168.17.23    0x1         0x2         24:0a:c4:9f:51:e8     *        wlan0",
+                "192.168.17.1     0x1         0x2         b0:4e:26:11:22:33     *        wlan0",
+                "10.0.0.7         0x1         0x6         24:0a:c4:00:00:07     *        eth0");
+
+        List<String> addresses = AlertNeighborTable.readArpTable(tableFile);
+
+        assertEquals(Arrays.asList("192.168.17.23", "192.168.17.1", "10.0.0.7"), addresses);
+    }
+
+    @Test
+    public void skipsIncompleteEntries() throws IOException {
+        File tableFile = writeTable(
+                // Host that has not answered the ARP request
+                "192.168.17.40    0x1         0x0         00:00:00:00:00:00     *        wlan0",
+                // Flag set, but no hardware address
+                "192.168.17.41    0x1         0x2         00:00:00:00:00:00     *        wlan0",
+                // Hardware address, but not complete
+                "192.168.17.42    0x1         0x4         24:0a:c4:9f:51:ea     *        wlan0",
+                "192.168.17.43    0x1         0x2         24:0a:c4:9f:51:eb     *        wlan0");
+
+        List<String> addresses = AlertNeighborTable.readArpTable(tableFile);
+
+        assertEquals(Arrays.asList("192.168.17.43"), addresses);
+    }
+
+    @Test
+    public void skipsMalformedLines() throws IOException {
+        File tableFile = writeTable(
+                "",
+                "192.168.17.50    0x1",
+                "fe80::1          0x1         0x2         24:0a:c4:9f:51:ec     *        wlan0",
+                "192.168.17.51    0x1         bad         24:0a:c4:9f:51:ed     *        wlan0",
+                "192.168.17.52    0x1         0x2         24:0a:c4:9f:51:ee     *        wlan0");
+
+        List<String> addresses = AlertNeighborTable.readArpTable(tableFile);
+
+        assertEquals(Arrays.asList("192.168.17.52"), addresses);
+    }
+
+    @Test
+    public void missingTableIsEmpty() {
+        File tableFile = new File(folder.getRoot(), "missing");
+
+        assertTrue(AlertNeighborTable.readArpTable(tableFile).isEmpty());
+    }
+
+    @Test
+    public void tableWithHeaderOnlyIsEmpty() throws IOException {
+        File tableFile = writeTable();
+
+        assertTrue(AlertNeighborTable.readArpTable(tableFile).isEmpty());
+    }
+}
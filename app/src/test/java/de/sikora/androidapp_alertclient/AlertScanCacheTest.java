@@ -0,0 +1,232 @@
+package de.sikora.androidapp_alertclient;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of AlertScanCache, in particular of the probe sequences after entries have been
+ * removed by backward shifting.
+ */
+public class AlertScanCacheTest {
+
+    // Current time used by the tests
+    private static final long TIME_NOW = 1000000L;
+
+    // Time for which entries are kept by the tests
+    private static final long TTL = 60000;
+
+    private static AlertScanCache createCache(int maxEntries) {
+        AlertScanCache cache = new AlertScanCache(maxEntries);
+
+        for (AlertScanCache.Result result : AlertScanCache.Result.values()) {
+            cache.setTtl(result, TTL);
+        }
+
+        return cache;
+    }
+
+    /**
+     * Returns the slot in which an address is stored first. Mirrors the hash function of the
+     * cache, so that the tests can build colliding probe sequences.
+     */
+    private static int homeSlot(long address, int numSlots) {
+        int h = (int) address * 0x9E3779B9;
+
+        return (h ^ (h >>> 16)) & (numSlots - 1);
+    }
+
+    /**
+     * Returns addresses of 10.0.0.0/16 that share the same home slot.
+     */
+    private static List<Long> collidingAddresses(int count, int numSlots) {
+        long base = AlertAddressRange.parseAddress("10.0.0.1");
+        int home = homeSlot(base, numSlots);
+        List<Long> addressList = new ArrayList<>();
+
+        for (long address = base; addressList.size() < count; address++) {
+            if (homeSlot(address, numSlots) == home) {
+                addressList.add(address);
+            }
+        }
+
+        return addressList;
+    }
+
+    @Test
+    public void recordsAndExpiresEntries() {
+        AlertScanCache cache = createCache(16);
+        long address = AlertAddressRange.parseAddress("192.168.1.20");
+
+        cache.setTtl(AlertScanCache.Result.TIMEOUT, 1000);
+        cache.put(address, AlertScanCache.Result.TIMEOUT, TIME_NOW);
+
+        assertTrue(cache.isSkipped(address, TIME_NOW + 999));
+        assertEquals(AlertScanCache.Result.TIMEOUT, cache.getResult(address, TIME_NOW));
+        assertFalse(cache.isSkipped(address, TIME_NOW + 1000));
+        assertNull(cache.getResult(address, TIME_NOW + 1000));
+    }
+
+    @Test
+    public void resultWithoutTtlIsNotRecorded() {
+        AlertScanCache cache = createCache(16);
+        long address = AlertAddressRange.parseAddress("192.168.1.20");
+
+        cache.setTtl(AlertScanCache.Result.REFUSED, 0);
+        cache.put(address, AlertScanCache.Result.REFUSED, TIME_NOW);
+
+        assertEquals(0, cache.size());
+        assertFalse(cache.isSkipped(address, TIME_NOW));
+    }
+
+    @Test
+    public void entriesBehindRemovedEntryRemainReachable() {
+        // 16 entries are stored in 32 slots
+        AlertScanCache cache = createCache(16);
+        List<Long> addressList = collidingAddresses(5, 32);
+
+        for (long address : addressList) {
+            cache.put(address, AlertScanCache.Result.REFUSED, TIME_NOW);
+        }
+
+        // Remove the entry at the start of the probe sequence
+        cache.remove(addressList.get(0));
+
+        assertFalse(cache.isSkipped(addressList.get(0), TIME_NOW));
+
+        for (long address : addressList.subList(1, addressList.size())) {
+            assertTrue(cache.isSkipped(address, TIME_NOW));
+        }
+
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    public void removedSlotIsReusedWithinProbeSequence() {
+        AlertScanCache cache = createCache(16);
+        List<Long> addressList = collidingAddresses(4, 32);
+
+        for (long address : addressList.subList(0, 3)) {
+            cache.put(address, AlertScanCache.Result.REFUSED, TIME_NOW);
+        }
+
+        cache.remove(addressList.get(1));
+        cache.put(addressList.get(3), AlertScanCache.Result.NO_ID, TIME_NOW);
+
+        // Recording an address again must not create a duplicate entry
+        cache.put(addressList.get(2), AlertScanCache.Result.TIMEOUT, TIME_NOW);
+
+        assertEquals(3, cache.size());
+        assertEquals(AlertScanCache.Result.TIMEOUT, cache.getResult(addressList.get(2), TIME_NOW));
+        assertEquals(AlertScanCache.Result.NO_ID, cache.getResult(addressList.get(3), TIME_NOW));
+        assertNull(cache.getResult(addressList.get(1), TIME_NOW));
+    }
+
+    @Test
+    public void probeSequenceWrapsAroundEndOfArrays() {
+        AlertScanCache cache = createCache(16);
+
+        // Addresses whose home slot is the last one, so that their sequence wraps around
+        long base = AlertAddressRange.parseAddress("10.0.0.1");
+        List<Long> addressList = new ArrayList<>();
+
+        for (long address = base; addressList.size() < 4; address++) {
+            if (homeSlot(address, 32) == 31) {
+                addressList.add(address);
+            }
+        }
+
+        for (long address : addressList) {
+            cache.put(address, AlertScanCache.Result.REFUSED, TIME_NOW);
+        }
+
+        cache.remove(addressList.get(0));
+        cache.remove(addressList.get(2));
+
+        assertTrue(cache.isSkipped(addressList.get(1), TIME_NOW));
+        assertTrue(cache.isSkipped(addressList.get(3), TIME_NOW));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void removeExpiredKeepsLiveEntriesReachable() {
+        AlertScanCache cache = createCache(16);
+        List<Long> addressList = collidingAddresses(6, 32);
+
+        for (int i = 0; i < addressList.size(); i++) {
+            // Every other entry expires early
+            cache.setTtl(AlertScanCache.Result.TIMEOUT, (i % 2 == 0) ? 1000 : TTL);
+            cache.put(addressList.get(i), AlertScanCache.Result.TIMEOUT, TIME_NOW);
+        }
+
+        cache.removeExpired(TIME_NOW + 1000);
+
+        assertEquals(3, cache.size());
+
+        for (int i = 0; i < addressList.size(); i++) {
+            assertEquals(i % 2 != 0, cache.isSkipped(addressList.get(i), TIME_NOW + 1000));
+        }
+    }
+
+    @Test
+    public void fullCacheDropsNewResultsUntilEntriesExpire() {
+        AlertScanCache cache = createCache(4);
+        long base = AlertAddressRange.parseAddress("10.0.0.1");
+
+        for (int i = 0; i < 4; i++) {
+            cache.put(base + i, AlertScanCache.Result.REFUSED, TIME_NOW);
+        }
+
+        cache.put(base + 4, AlertScanCache.Result.REFUSED, TIME_NOW);
+
+        assertEquals(4, cache.size());
+        assertFalse(cache.isSkipped(base + 4, TIME_NOW));
+
+        // Expired entries make room for new ones
+        cache.put(base + 4, AlertScanCache.Result.REFUSED, TIME_NOW + TTL);
+
+        assertEquals(1, cache.size());
+        assertTrue(cache.isSkipped(base + 4, TIME_NOW + TTL));
+    }
+
+    @Test
+    public void matchesMapAfterRandomPutsAndRemoves() {
+        AlertScanCache cache = createCache(64);
+        Map<Long, AlertScanCache.Result> expected = new HashMap<>();
+        Random random = new Random(42);
+        long base = AlertAddressRange.parseAddress("172.16.0.1");
+
+        for (int i = 0; i < 20000; i++) {
+            long address = base + random.nextInt(200);
+
+            if (random.nextInt(3) == 0) {
+                cache.remove(address);
+                expected.remove(address);
+            }
+            else if (expected.size() < 64 || expected.containsKey(address)) {
+                AlertScanCache.Result result =
+                        AlertScanCache.Result.values()[random.nextInt(3)];
+
+                cache.put(address, result, TIME_NOW);
+                expected.put(address, result);
+            }
+
+            if (i % 100 == 0) {
+                assertEquals(expected.size(), cache.size());
+
+                for (int a = 0; a < 200; a++) {
+                    assertEquals(expected.get(base + a), cache.getResult(base + a, TIME_NOW));
+                }
+            }
+        }
+    }
+}
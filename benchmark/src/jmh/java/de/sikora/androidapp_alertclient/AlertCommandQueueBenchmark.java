@@ -0,0 +1,82 @@
+package de.sikora.androidapp_alertclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the output queue of AlertClientTcp, uncontended and with concurrent producers
+ * and a consumer as in selector mode.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AlertCommandQueueBenchmark {
+
+    // Capacity of the output queue of AlertClientTcp
+    private static final int QUEUE_CAPACITY = 32;
+
+    /**
+     * Queue used by a single thread.
+     */
+    @State(Scope.Thread)
+    public static class ThreadQueue {
+
+        AlertCommandQueue queue;
+
+        @Setup
+        public void setUp() {
+            queue = new AlertCommandQueue(QUEUE_CAPACITY,
+                    AlertCommandQueue.OverflowPolicy.DROP_OLDEST);
+        }
+    }
+
+    /**
+     * Queue shared by the threads of a benchmark group.
+     */
+    @State(Scope.Group)
+    public static class SharedQueue {
+
+        AlertCommandQueue queue;
+
+        @Setup
+        public void setUp() {
+            queue = new AlertCommandQueue(QUEUE_CAPACITY,
+                    AlertCommandQueue.OverflowPolicy.DROP_OLDEST);
+        }
+    }
+
+    @Benchmark
+    public int offerPoll(ThreadQueue state) {
+        state.queue.offer(1);
+        return state.queue.poll();
+    }
+
+    @Benchmark
+    public int addFullQueue(ThreadQueue state) {
+        // Overflow path: the oldest value is dropped once the queue has filled up
+        state.queue.add(2);
+        return state.queue.size();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public boolean contendedAdd(SharedQueue state) {
+        return state.queue.add(1);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public int contendedPoll(SharedQueue state) {
+        return state.queue.poll();
+    }
+}
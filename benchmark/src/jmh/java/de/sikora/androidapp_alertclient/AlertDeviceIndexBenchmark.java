@@ -0,0 +1,78 @@
+package de.sikora.androidapp_alertclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the device lookups of the AlertClientPool, which are served by its
+ * AlertDeviceIndex, for different numbers of devices.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AlertDeviceIndexBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int numDevices;
+
+    private AlertDeviceIndex<Object> index;
+
+    private String[] addresses;
+
+    private String[] ids;
+
+    // Position of the device looked up next
+    private int next;
+
+    @Setup
+    public void setUp() {
+        index = new AlertDeviceIndex<>();
+        addresses = new String[numDevices];
+        ids = new String[numDevices];
+
+        for (int i = 0; i < numDevices; i++) {
+            addresses[i] = "10.0." + (i / 256) + "." + (i % 256);
+            ids[i] = Long.toHexString(0x240AC4000000L + i);
+
+            AlertDeviceModel device = new AlertDeviceModel();
+            device.setAddress(addresses[i]);
+            device.setId(ids[i]);
+
+            index.put(device, new Object());
+        }
+    }
+
+    private int nextPosition() {
+        next = (next + 1 == numDevices) ? 0 : next + 1;
+        return next;
+    }
+
+    @Benchmark
+    public Object getByAddress() {
+        return index.getByAddress(addresses[nextPosition()]);
+    }
+
+    @Benchmark
+    public Object getById() {
+        return index.getById(ids[nextPosition()]);
+    }
+
+    @Benchmark
+    public Object getByAddressMissing() {
+        return index.getByAddress("10.1.0.0");
+    }
+
+    @Benchmark
+    public List<AlertDeviceModel> getDevices() {
+        return index.getDevices();
+    }
+}
@@ -0,0 +1,67 @@
+package de.sikora.androidapp_alertclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the dispatch of alert state events to the listeners of a device.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AlertDeviceModelBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int numListeners;
+
+    private AlertDeviceModel device;
+
+    private AlertDeviceModel.AlertStateEvent levelEvent;
+
+    private int level;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        device = new AlertDeviceModel();
+
+        for (int i = 0; i < numListeners; i++) {
+            device.addListener(new AlertDeviceModel.AlertStateListener() {
+                @Override
+                public void onAlertLevelEvent(AlertDeviceModel alertState,
+                                              AlertDeviceModel.AlertStateEvent ev) {
+                    blackhole.consume(alertState.getAlertLevel());
+                }
+
+                @Override
+                public void onConnectionStateEvent(AlertDeviceModel alertState,
+                                                   AlertDeviceModel.AlertStateEvent ev) {
+                    blackhole.consume(alertState.isConnected());
+                }
+            });
+        }
+
+        levelEvent = new AlertDeviceModel.AlertStateEvent(
+                AlertDeviceModel.AlertEventType.ALERT_LEVEL_EVENT, null);
+    }
+
+    @Benchmark
+    public void notifyListeners() {
+        device.notifyListeners(levelEvent);
+    }
+
+    @Benchmark
+    public void setAlertLevelAndNotify() {
+        // Alternate the level so that every call changes the state
+        level ^= 1;
+        device.setAlertLevelAndNotify(level, null);
+    }
+}
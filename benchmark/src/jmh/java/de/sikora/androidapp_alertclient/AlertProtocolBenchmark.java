@@ -0,0 +1,28 @@
+package de.sikora.androidapp_alertclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the decoding of the device id received in response to an id request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AlertProtocolBenchmark {
+
+    // Id response as received from a device, preceded by one other value
+    private final byte[] rxBuffer = {1, (byte) 0x24, (byte) 0x0A, (byte) 0xC4, (byte) 0x9F,
+            (byte) 0x51, (byte) 0xE8};
+
+    @Benchmark
+    public String decodeDeviceId() {
+        return AlertProtocol.decodeDeviceId(rxBuffer, 1);
+    }
+}
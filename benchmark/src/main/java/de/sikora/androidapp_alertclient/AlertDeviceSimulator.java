@@ -0,0 +1,733 @@
+package de.sikora.androidapp_alertclient;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates any number of alert devices, so that the client pool and the device scan can be
+ * load tested without the hardware.
+ *
+ * Each simulated device listens on its own socket address and speaks the protocol of the alert
+ * devices (see AlertProtocol): a received alert level is set and answered with the new level,
+ * CMD_READ_REQUEST is answered with the current level, and CMD_ID_REQUEST is answered with
+ * the device id.
+ *
+ * The devices either share one address and listen on consecutive ports, or share one port and
+ * listen on consecutive addresses. The latter works on Linux for the whole 127.0.0.0/8 range,
+ * so that a scan of e.g. 127.0.17.x finds the simulated devices.
+ *
+ * Responses are delayed by a configurable latency with jitter, and can be dropped or stalled
+ * to simulate unreliable devices. All devices are served by a single thread.
+ *
+ * Run from the command line with: ./gradlew :benchmark:simulate -PsimArgs="--count 1000"
+ */
+public class AlertDeviceSimulator implements Runnable {
+
+    // Size of the receive buffer shared by all connections
+    private static final int RX_BUFFER_SIZE = 256;
+
+    // Number of pending connections per device
+    private static final int ACCEPT_BACKLOG = 16;
+
+    // Port the alert devices listen on, see AlertClientPool.ALERT_SERVER_DEFAULT_PORT
+    private static final int DEFAULT_PORT = 12321;
+
+    // Id of the first device, the following devices use consecutive ids
+    private static final long DEVICE_ID_FIRST = 0x240AC4000000L;
+
+    // Address of the first device
+    private final InetAddress firstAddress;
+
+    // Port of the first device
+    private final int firstPort;
+
+    // Number of simulated devices
+    private final int numDevices;
+
+    // True, if the devices listen on consecutive addresses, false for consecutive ports
+    private final boolean consecutiveAddresses;
+
+    // Simulated devices, only accessed by the simulator thread after start
+    private final Device[] devices;
+
+    // Alert level changes triggered at the devices, e.g. by pressing a button
+    private final ConcurrentLinkedQueue<int[]> levelChanges = new ConcurrentLinkedQueue<>();
+
+    // Responses waiting for their due time, only accessed by the simulator thread
+    private final PriorityQueue<Response> pendingResponses =
+            new PriorityQueue<>(64, new Comparator<Response>() {
+                @Override
+                public int compare(Response r1, Response r2) {
+                    if (r1.due != r2.due) {
+                        return (r1.due < r2.due) ? -1 : 1;
+                    }
+
+                    return (r1.sequence < r2.sequence) ? -1
+                            : ((r1.sequence == r2.sequence) ? 0 : 1);
+                }
+            });
+
+    // Receive buffer shared by all connections, only accessed by the simulator thread
+    private final ByteBuffer rxBuffer = ByteBuffer.allocate(RX_BUFFER_SIZE);
+
+    // Random numbers for latency, drops and stalls, only accessed by the simulator thread
+    private final Random random = new Random();
+
+    // Number of accepted connections
+    private final AtomicLong numConnections = new AtomicLong(0);
+
+    // Number of received values
+    private final AtomicLong numRequests = new AtomicLong(0);
+
+    // Number of received values that have not been answered due to drops or stalls
+    private final AtomicLong numDropped = new AtomicLong(0);
+
+    // Number of stalls
+    private final AtomicLong numStalls = new AtomicLong(0);
+
+    // Mean time between a request and its response in ms
+    private volatile int latency = 0;
+
+    // Maximum deviation of the response time from the mean in ms
+    private volatile int jitter = 0;
+
+    // Probability that a request is not answered in percent
+    private volatile double dropRate = 0;
+
+    // Probability that a request stalls the device in percent
+    private volatile double stallRate = 0;
+
+    // Time during which a stalled device does not respond in ms
+    private volatile int stallDuration = 0;
+
+    // Sequence number of responses, keeps responses with equal due time in order
+    private long responseSequence = 0;
+
+    // Selector that monitors the channels of all devices
+    private volatile Selector selector = null;
+
+    // Flag that is used to stop the run() method
+    private volatile boolean runSimulator = false;
+
+    // Thread that runs the simulator
+    private Thread simulatorThread = null;
+
+
+    /**
+     * Creates a simulator. The devices start listening when <code>start</code> is called.
+     *
+     * @param firstAddress         Address of the first device.
+     * @param firstPort            Port of the first device.
+     * @param numDevices           Number of simulated devices.
+     * @param consecutiveAddresses True, if the devices shall listen on consecutive addresses
+     *                             with the same port, false for consecutive ports with the same
+     *                             address.
+     */
+    public AlertDeviceSimulator(InetAddress firstAddress, int firstPort, int numDevices,
+                                boolean consecutiveAddresses) {
+        this.firstAddress = firstAddress;
+        this.firstPort = firstPort;
+        this.numDevices = numDevices;
+        this.consecutiveAddresses = consecutiveAddresses;
+
+        devices = new Device[numDevices];
+
+        for (int i = 0; i < numDevices; i++) {
+            devices[i] = new Device(DEVICE_ID_FIRST + i, getDeviceSocketAddress(i));
+        }
+    }
+
+    /**
+     * Sets the response time of the devices.
+     *
+     * @param latency Mean time between a request and its response in ms.
+     * @param jitter  Maximum deviation from the mean in ms.
+     */
+    public void setLatency(int latency, int jitter) {
+        this.latency = latency;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Sets the probability that a request is not answered.
+     *
+     * @param dropRate Probability in percent.
+     */
+    public void setDropRate(double dropRate) {
+        this.dropRate = dropRate;
+    }
+
+    /**
+     * Sets how often and how long the devices stall, i.e. ignore all requests.
+     *
+     * @param stallRate     Probability that a request stalls the device in percent.
+     * @param stallDuration Time during which a stalled device does not respond in ms.
+     */
+    public void setStalls(double stallRate, int stallDuration) {
+        this.stallRate = stallRate;
+        this.stallDuration = stallDuration;
+    }
+
+    public int getNumDevices() {
+        return numDevices;
+    }
+
+    /**
+     * Returns the socket address the specified device listens on.
+     *
+     * @param index Index of the device between 0 and getNumDevices() - 1.
+     * @return Socket address of the device.
+     */
+    public InetSocketAddress getDeviceSocketAddress(int index) {
+        if (!consecutiveAddresses) {
+            return new InetSocketAddress(firstAddress, firstPort + index);
+        }
+
+        byte[] address = firstAddress.getAddress();
+        int carry = index;
+
+        // Add the index to the address, starting with the last byte
+        for (int i = address.length - 1; i >= 0 && carry != 0; i--) {
+            int sum = (address[i] & 0xFF) + carry;
+            address[i] = (byte) sum;
+            carry = sum >>> 8;
+        }
+
+        try {
+            return new InetSocketAddress(InetAddress.getByAddress(address), firstPort);
+        }
+        catch (IOException e) {
+            // Only thrown for addresses of illegal length
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the id the specified device sends in response to an id request.
+     *
+     * @param index Index of the device between 0 and getNumDevices() - 1.
+     * @return Id as hexadecimal string, as decoded by the clients.
+     */
+    public String getDeviceId(int index) {
+        return Long.toHexString(devices[index].id);
+    }
+
+    /**
+     * Changes the alert level of a device as if it was changed at the device. The new level is
+     * sent to all clients connected to the device.
+     *
+     * @param index      Index of the device between 0 and getNumDevices() - 1.
+     * @param alertLevel New alert level.
+     */
+    public void setAlertLevel(int index, int alertLevel) {
+        levelChanges.add(new int[] {index, alertLevel});
+
+        Selector sel = selector;
+
+        if (sel != null) {
+            sel.wakeup();
+        }
+    }
+
+    public long getNumConnections() {
+        return numConnections.get();
+    }
+
+    public long getNumRequests() {
+        return numRequests.get();
+    }
+
+    public long getNumDropped() {
+        return numDropped.get();
+    }
+
+    public long getNumStalls() {
+        return numStalls.get();
+    }
+
+    /**
+     * Binds the sockets of all devices and starts the simulator thread.
+     *
+     * @throws IOException If a socket could not be bound, e.g. because the port is in use or the
+     *                     limit of open files has been reached.
+     */
+    public synchronized void start() throws IOException {
+        if (runSimulator) {
+            return;
+        }
+
+        selector = Selector.open();
+
+        try {
+            for (Device device : devices) {
+                ServerSocketChannel serverChannel = ServerSocketChannel.open();
+                device.serverChannel = serverChannel;
+
+                serverChannel.configureBlocking(false);
+                serverChannel.socket().setReuseAddress(true);
+                serverChannel.socket().bind(device.socketAddress, ACCEPT_BACKLOG);
+                serverChannel.register(selector, SelectionKey.OP_ACCEPT, device);
+            }
+        }
+        catch (IOException e) {
+            closeAll();
+            throw e;
+        }
+
+        runSimulator = true;
+
+        simulatorThread = new Thread(this, AlertDeviceSimulator.class.getSimpleName());
+        simulatorThread.setDaemon(true);
+        simulatorThread.start();
+    }
+
+    /**
+     * Stops the simulator thread and closes all sockets.
+     *
+     * @throws InterruptedException If interrupted while waiting for the thread to end.
+     */
+    public void stop() throws InterruptedException {
+        Thread thread;
+
+        synchronized (this) {
+            thread = simulatorThread;
+            simulatorThread = null;
+            runSimulator = false;
+        }
+
+        if (thread != null) {
+            selector.wakeup();
+            thread.join();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (runSimulator) {
+                processLevelChanges();
+
+                long curTime = System.currentTimeMillis();
+
+                // Send all responses that are due
+                Response response;
+
+                while ((response = pendingResponses.peek()) != null && response.due <= curTime) {
+                    pendingResponses.poll();
+                    send(response.connection, response.data);
+                }
+
+                // Wait for network events or until the next response is due
+                if (response == null) {
+                    selector.select();
+                }
+                else {
+                    selector.select(Math.max(1, response.due - curTime));
+                }
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    if (key.isValid() && key.isAcceptable()) {
+                        accept((Device) key.attachment());
+                    }
+                    else {
+                        Connection connection = (Connection) key.attachment();
+
+                        if (key.isValid() && key.isReadable()) {
+                            receive(connection);
+                        }
+
+                        if (key.isValid() && key.isWritable()) {
+                            flush(connection);
+                        }
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        finally {
+            runSimulator = false;
+            closeAll();
+        }
+    }
+
+    private void processLevelChanges() {
+        int[] change;
+
+        while ((change = levelChanges.poll()) != null) {
+            Device device = devices[change[0]];
+            device.alertLevel = change[1];
+
+            // A device sends its alert level whenever it changes
+            for (Connection connection : device.connections) {
+                send(connection, new byte[] {(byte) device.alertLevel});
+            }
+        }
+    }
+
+    private void accept(Device device) {
+        try {
+            SocketChannel channel = device.serverChannel.accept();
+
+            if (channel == null) {
+                return;
+            }
+
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+
+            Connection connection = new Connection(device, channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+
+            device.connections.add(connection);
+            numConnections.incrementAndGet();
+        }
+        catch (IOException e) {
+            // The client may have closed the connection already
+        }
+    }
+
+    private void receive(Connection connection) {
+        rxBuffer.clear();
+
+        int numBytes;
+
+        try {
+            numBytes = connection.channel.read(rxBuffer);
+        }
+        catch (IOException e) {
+            numBytes = -1;
+        }
+
+        if (numBytes < 0) {
+            close(connection);
+            return;
+        }
+
+        long curTime = System.currentTimeMillis();
+
+        for (int i = 0; i < numBytes; i++) {
+            processRequest(connection, rxBuffer.get(i) & 0xFF, curTime);
+        }
+    }
+
+    /**
+     * Answers a value received from a client as an alert device would.
+     */
+    private void processRequest(Connection connection, int rxValue, long curTime) {
+        Device device = connection.device;
+
+        numRequests.incrementAndGet();
+
+        // A stalled device neither executes nor answers requests
+        if (curTime < device.stalledUntil) {
+            numDropped.incrementAndGet();
+            return;
+        }
+
+        if (stallRate > 0 && random.nextDouble() * 100 < stallRate) {
+            device.stalledUntil = curTime + stallDuration;
+            numStalls.incrementAndGet();
+            numDropped.incrementAndGet();
+            return;
+        }
+
+        byte[] data;
+
+        if (rxValue == AlertProtocol.CMD_ID_REQUEST) {
+            data = new byte[AlertProtocol.ID_NUM_BYTES];
+            AlertProtocol.encodeDeviceId(device.id, data, 0);
+        }
+        else {
+            if (rxValue != AlertProtocol.CMD_READ_REQUEST) {
+                device.alertLevel = rxValue;
+            }
+
+            data = new byte[] {(byte) device.alertLevel};
+        }
+
+        if (dropRate > 0 && random.nextDouble() * 100 < dropRate) {
+            numDropped.incrementAndGet();
+            return;
+        }
+
+        // Responses of a connection are sent in the order of the requests
+        long delay = latency;
+
+        if (jitter > 0) {
+            delay += random.nextInt(2 * jitter + 1) - jitter;
+        }
+
+        long due = Math.max(curTime + Math.max(0, delay), connection.lastDue);
+        connection.lastDue = due;
+
+        if (due <= curTime && pendingResponses.isEmpty()) {
+            send(connection, data);
+        }
+        else {
+            pendingResponses.add(new Response(connection, data, due, responseSequence++));
+        }
+    }
+
+    private void send(Connection connection, byte[] data) {
+        if (!connection.channel.isOpen()) {
+            return;
+        }
+
+        connection.txBuffer.compact();
+
+        if (connection.txBuffer.remaining() < data.length) {
+            // Grow the buffer of a client that does not read its input
+            ByteBuffer buffer = ByteBuffer.allocate(2 * connection.txBuffer.capacity()
+                    + data.length);
+            connection.txBuffer.flip();
+            buffer.put(connection.txBuffer);
+            connection.txBuffer = buffer;
+        }
+
+        connection.txBuffer.put(data);
+        connection.txBuffer.flip();
+
+        flush(connection);
+    }
+
+    private void flush(Connection connection) {
+        try {
+            connection.channel.write(connection.txBuffer);
+        }
+        catch (IOException e) {
+            close(connection);
+            return;
+        }
+
+        // Wait until the channel is writable if not all data could be sent
+        if (connection.txBuffer.hasRemaining()) {
+            connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+        else {
+            connection.key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void close(Connection connection) {
+        connection.device.connections.remove(connection);
+
+        try {
+            connection.channel.close();
+        }
+        catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    private void closeAll() {
+        for (Device device : devices) {
+            for (Connection connection : new ArrayList<>(device.connections)) {
+                close(connection);
+            }
+
+            if (device.serverChannel != null) {
+                try {
+                    device.serverChannel.close();
+                }
+                catch (IOException e) {
+                    // Ignore
+                }
+
+                device.serverChannel = null;
+            }
+        }
+
+        pendingResponses.clear();
+
+        try {
+            selector.close();
+        }
+        catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    /**
+     * Starts a simulator with the settings given on the command line and prints its counters
+     * every ten seconds.
+     *
+     * @param args Command line arguments, see <code>printUsage</code>.
+     */
+    public static void main(String[] args) throws Exception {
+        String address = "127.0.0.1";
+        int port = DEFAULT_PORT;
+        int count = 1;
+        boolean consecutiveAddresses = false;
+        int latency = 0;
+        int jitter = 0;
+        double dropRate = 0;
+        double stallRate = 0;
+        int stallDuration = 0;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+
+                if (arg.equals("--address")) {
+                    address = args[++i];
+                }
+                else if (arg.equals("--port")) {
+                    port = Integer.parseInt(args[++i]);
+                }
+                else if (arg.equals("--count")) {
+                    count = Integer.parseInt(args[++i]);
+                }
+                else if (arg.equals("--consecutive-addresses")) {
+                    consecutiveAddresses = true;
+                }
+                else if (arg.equals("--latency")) {
+                    latency = Integer.parseInt(args[++i]);
+                }
+                else if (arg.equals("--jitter")) {
+                    jitter = Integer.parseInt(args[++i]);
+                }
+                else if (arg.equals("--drop")) {
+                    dropRate = Double.parseDouble(args[++i]);
+                }
+                else if (arg.equals("--stall")) {
+                    stallRate = Double.parseDouble(args[++i]);
+                    stallDuration = Integer.parseInt(args[++i]);
+                }
+                else {
+                    printUsage();
+                    return;
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            printUsage();
+            return;
+        }
+
+        AlertDeviceSimulator simulator = new AlertDeviceSimulator(
+                InetAddress.getByName(address), port, count, consecutiveAddresses);
+
+        simulator.setLatency(latency, jitter);
+        simulator.setDropRate(dropRate);
+        simulator.setStalls(stallRate, stallDuration);
+        simulator.start();
+
+        System.out.println("Simulating " + count + " devices from "
+                + simulator.getDeviceSocketAddress(0) + " to "
+                + simulator.getDeviceSocketAddress(count - 1) + ".");
+
+        while (simulator.runSimulator) {
+            Thread.sleep(10000);
+
+            System.out.println("connections=" + simulator.getNumConnections()
+                    + ", requests=" + simulator.getNumRequests()
+                    + ", dropped=" + simulator.getNumDropped()
+                    + ", stalls=" + simulator.getNumStalls());
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Options:\n"
+                + "  --address <address>         Address of the first device (127.0.0.1)\n"
+                + "  --port <port>               Port of the first device ("
+                + DEFAULT_PORT + ")\n"
+                + "  --count <n>                 Number of devices (1)\n"
+                + "  --consecutive-addresses     Use consecutive addresses instead of ports\n"
+                + "  --latency <ms>              Mean response time (0)\n"
+                + "  --jitter <ms>               Maximum deviation of the response time (0)\n"
+                + "  --drop <percent>            Probability that a request is dropped (0)\n"
+                + "  --stall <percent> <ms>      Probability and duration of stalls (0 0)");
+    }
+
+    /**
+     * State of one simulated device.
+     */
+    private static class Device {
+
+        final long id;
+
+        final InetSocketAddress socketAddress;
+
+        // Connections of clients to this device
+        final List<Connection> connections = new ArrayList<>(1);
+
+        ServerSocketChannel serverChannel = null;
+
+        int alertLevel = 0;
+
+        // Time until which the device does not respond
+        long stalledUntil = 0;
+
+        Device(long id, InetSocketAddress socketAddress) {
+            this.id = id;
+            this.socketAddress = socketAddress;
+        }
+    }
+
+    /**
+     * Connection of a client to a simulated device.
+     */
+    private static class Connection {
+
+        final Device device;
+
+        final SocketChannel channel;
+
+        SelectionKey key = null;
+
+        // Data that has not been sent yet, in read mode
+        ByteBuffer txBuffer = ByteBuffer.allocate(16);
+
+        // Due time of the last response, later responses are not sent before
+        long lastDue = 0;
+
+        Connection(Device device, SocketChannel channel) {
+            this.device = device;
+            this.channel = channel;
+
+            txBuffer.flip();
+        }
+    }
+
+    /**
+     * Response waiting for its due time.
+     */
+    private static class Response {
+
+        final Connection connection;
+
+        final byte[] data;
+
+        final long due;
+
+        final long sequence;
+
+        Response(Connection connection, byte[] data, long due, long sequence) {
+            this.connection = connection;
+            this.data = data;
+            this.due = due;
+            this.sequence = sequence;
+        }
+    }
+}